@@ -0,0 +1,50 @@
+package com.crud.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.crud.MicroserviceCrudApplication;
+
+/**
+ * Starts the application against its embedded H2 for a benchmark trial and
+ * seeds it.
+ */
+final class BenchContext {
+
+    private BenchContext() {
+    }
+
+    static ConfigurableApplicationContext start(WebApplicationType type, String... properties) {
+        return new SpringApplicationBuilder(MicroserviceCrudApplication.class)
+                .web(type)
+                .profiles("bench")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Inserts users {@code 1..users}, each with {@code accountsPerUser}
+     * accounts numbered {@code userId * 1000 + i} holding {@code balanceMinor}.
+     */
+    static void seed(ConfigurableApplicationContext context, int users, int accountsPerUser, long balanceMinor) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> userRows = new ArrayList<>();
+        List<Object[]> accountRows = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            userRows.add(new Object[] { userId, "First" + userId, "Last" + userId, "user" + userId + "@abc.com",
+                    7878789878L, "Pune", "India" });
+            for (int i = 0; i < accountsPerUser; i++) {
+                accountRows.add(new Object[] { userId * 1000 + i, balanceMinor, userId });
+            }
+        }
+        jdbc.batchUpdate("insert into user (user_id, first_name, last_name, email, phone_number, address_line1,"
+                + " address_line2, version) values (?, ?, ?, ?, ?, ?, ?, 0)", userRows);
+        jdbc.batchUpdate("insert into account (account_number, balance_minor, user_id, version) values (?, ?, ?, 0)",
+                accountRows);
+    }
+}
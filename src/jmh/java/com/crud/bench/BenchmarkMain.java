@@ -0,0 +1,32 @@
+package com.crud.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JMH JSON, for diffing
+ * against a previous run.
+ * <p>
+ * Arguments are regular JMH command line options (for example
+ * {@code JsonBenchmark -p accounts=10}); the result file defaults to
+ * {@code build/jmh-results.json} and can be moved with {@code -rff}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON)
+                .result(commandLine.getResult().orElse("build/jmh-results.json"))
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,54 @@
+package com.crud.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crud.error.UserNotFoundException;
+
+/**
+ * Cost of the not-found path's exception, against building only its message
+ * and against an exception of the same message that fills its stack trace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExceptionBenchmark {
+
+    private Long id = 5L;
+
+    @Benchmark
+    public String messageOnly() {
+        return "User id not found : " + id;
+    }
+
+    @Benchmark
+    public RuntimeException construct() {
+        return new UserNotFoundException(id);
+    }
+
+    @Benchmark
+    public RuntimeException constructWithStackTrace() {
+        return new RuntimeException("User id not found : " + id);
+    }
+
+    @Benchmark
+    public String throwAndCatch() {
+        try {
+            throw new UserNotFoundException(id);
+        } catch (UserNotFoundException e) {
+            return e.getMessage();
+        }
+    }
+}
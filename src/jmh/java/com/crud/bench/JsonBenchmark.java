@@ -0,0 +1,76 @@
+package com.crud.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crud.Account;
+import com.crud.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson (de)serialisation of a user graph as a function of its account count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({ "0", "1", "10", "100" })
+    private int accounts;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private User user;
+    private byte[] userJson;
+    private Account account;
+    private byte[] accountJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        user = new User(1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India");
+        List<Account> owned = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            owned.add(new Account(1000L + i, 12345.67 + i));
+        }
+        user.setAccount(owned);
+        userJson = mapper.writeValueAsBytes(user);
+        account = new Account(123L, 12345.67);
+        accountJson = mapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws Exception {
+        return mapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User deserializeUser() throws Exception {
+        return mapper.readValue(userJson, User.class);
+    }
+
+    @Benchmark
+    public byte[] serializeAccount() throws Exception {
+        return mapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public Account deserializeAccount() throws Exception {
+        return mapper.readValue(accountJson, Account.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.crud.bench;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Full dispatch through the controllers (filters, argument resolution, JSON,
+ * exception handling) without a socket, against embedded H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MockMvcBenchmark {
+
+    @Param({ "1000" })
+    private int users;
+
+    // false registers no-op meters, so the difference between the two runs is the cost of recording
+    @Param({ "true", "false" })
+    private boolean metrics;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() {
+        context = BenchContext.start(WebApplicationType.SERVLET, "server.port=0",
+                "management.metrics.enable.all=" + metrics);
+        BenchContext.seed(context, users, 2, 100_000);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, users + 1L);
+    }
+
+    @Benchmark
+    public MvcResult getUser() throws Exception {
+        return mockMvc.perform(get("/users/" + randomId())).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getAccount() throws Exception {
+        return mockMvc.perform(get("/accounts/" + (randomId() * 1000))).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getUserNotFound() throws Exception {
+        return mockMvc.perform(get("/users/-1")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult putUser() throws Exception {
+        return mockMvc.perform(put("/users/" + randomId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Ronak\",\"lastName\":\"Mehta\",\"email\":\"ronak@abc.com\","
+                        + "\"phoneNumber\":7878789878,\"addressLine1\":\"Pune\",\"addressLine2\":\"India\"}"))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult patchUser() throws Exception {
+        return mockMvc.perform(patch("/users/" + randomId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"ronak@gmail.com\"}"))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult keysetPage() throws Exception {
+        return mockMvc.perform(get("/users/page").param("size", "100")).andReturn();
+    }
+}
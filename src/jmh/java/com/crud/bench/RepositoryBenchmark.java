@@ -0,0 +1,121 @@
+package com.crud.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.BatchInserter;
+import com.crud.BatchResult;
+import com.crud.User;
+import com.crud.UserRepository;
+
+/**
+ * Repository round trips against embedded H2, including the single-query
+ * projection against the entity path for users with their accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({ "1000" })
+    private int users;
+
+    @Param({ "2" })
+    private int accountsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private TransactionTemplate tx;
+    private BatchInserter batchInserter;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchContext.start(WebApplicationType.NONE);
+        repository = context.getBean(UserRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        batchInserter = context.getBean(BatchInserter.class);
+        BenchContext.seed(context, users, accountsPerUser, 100_000);
+        nextId.set(users + 1L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, users + 1L);
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public User save() {
+        long id = nextId.getAndIncrement();
+        return repository.save(new User(id, "First", "Last", "new@abc.com", 7878789878L, "Pune", "India"));
+    }
+
+    @Benchmark
+    public BatchResult batchInsert500() {
+        List<User> batch = new ArrayList<>(500);
+        for (int i = 0; i < 500; i++) {
+            batch.add(new User(nextId.getAndIncrement(), "First", "Last", "batch@abc.com", 7878789878L, "Pune", "India"));
+        }
+        return batchInserter.insert(batch, User::getUserId);
+    }
+
+    @Benchmark
+    public void saveOrUpdate() {
+        repository.upsert(new User(randomId(), "First", "Last", "upsert@abc.com", 7878789878L, "Mumbai", "India"));
+    }
+
+    @Benchmark
+    public List<User> keysetPage() {
+        return repository.findByUserIdGreaterThanOrderByUserIdAsc(randomId(), PageRequest.of(0, 100));
+    }
+
+    @Benchmark
+    public List<Object[]> usersWithAccountsProjection() {
+        return repository.findAllWithAccountRows();
+    }
+
+    @Benchmark
+    public int usersWithAccountsEntities() {
+        return tx.execute(status -> {
+            int accounts = 0;
+            for (User user : repository.findAll()) {
+                accounts += user.getAccount().size();
+            }
+            return accounts;
+        });
+    }
+}
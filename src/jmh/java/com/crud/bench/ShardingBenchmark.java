@@ -0,0 +1,92 @@
+package com.crud.bench;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+import com.crud.shard.AccountRebalancer;
+
+/**
+ * Account operations per second as the account table is spread over more
+ * shards (embedded H2 databases in this JVM). Keyed writes and reads go to
+ * one shard each; a keyset page is scattered to every shard and merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class ShardingBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    private int shards;
+
+    @Param({ "10000" })
+    private int users;
+
+    private ConfigurableApplicationContext context;
+    private AccountRepository accounts;
+
+    @Setup
+    public void setUp() {
+        context = BenchContext.start(WebApplicationType.NONE,
+                "crud.shards.enabled=true",
+                "crud.shards.count=" + shards,
+                "crud.shards.rebalance-on-start=false");
+        accounts = context.getBean(AccountRepository.class);
+        // seeded on the primary, then moved to the owning shards
+        BenchContext.seed(context, users, 1, 100_000);
+        context.getBean(AccountRebalancer.class).rebalance();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomAccount() {
+        return ThreadLocalRandom.current().nextLong(1, users + 1L) * 1000;
+    }
+
+    @Benchmark
+    public void upsert() {
+        accounts.upsert(new Account(randomAccount(), ThreadLocalRandom.current().nextInt(100_000) / 100.0));
+    }
+
+    @Benchmark
+    public int credit() {
+        return accounts.credit(randomAccount(), 1);
+    }
+
+    @Benchmark
+    public Optional<Account> findById() {
+        return accounts.findById(randomAccount());
+    }
+
+    @Benchmark
+    public List<Account> page() {
+        return accounts.findByAccountNumberGreaterThanOrderByAccountNumberAsc(randomAccount(), PageRequest.of(0, 100));
+    }
+}
@@ -0,0 +1,76 @@
+package com.crud.bench;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import com.crud.TransferService;
+
+/**
+ * Transfers per second when many threads hit a small set of hot accounts.
+ * Fewer hot accounts means more threads queueing on the same row locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class TransferBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({ "2", "16", "1024" })
+    private int hotAccounts;
+
+    private ConfigurableApplicationContext context;
+    private TransferService transfers;
+
+    @Setup
+    public void setUp() {
+        context = BenchContext.start(WebApplicationType.NONE);
+        transfers = context.getBean(TransferService.class);
+        // one account per user, numbered userId * 1000
+        BenchContext.seed(context, hotAccounts, 1, 1_000_000_000L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(1, hotAccounts + 1L);
+        long to = random.nextLong(1, hotAccounts);
+        if (to >= from) {
+            to++;
+        }
+        try {
+            transfers.transfer(from * 1000, to * 1000, AMOUNT);
+        } catch (ConcurrencyFailureException e) {
+            // retries exhausted; counted as a completed (failed) operation
+            blackhole.consume(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.crud.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crud.Account;
+import com.crud.JacksonProtobufHttpMessageConverter;
+import com.crud.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encode and decode cost of the negotiable wire formats for one user and for
+ * a list of users, each with two accounts. The payload size of every
+ * format/shape pair is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({ "json", "cbor", "smile", "protobuf" })
+    private String format;
+
+    // 1 is a single entity, anything else a list of that many
+    @Param({ "1", "100" })
+    private int users;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private Object body;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<User> list = new ArrayList<>(users);
+        for (long userId = 1; userId <= users; userId++) {
+            User user = new User(userId, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India");
+            List<Account> owned = new ArrayList<>();
+            owned.add(new Account(userId * 1000, 12345.67));
+            owned.add(new Account(userId * 1000 + 1, 0.5));
+            user.setAccount(owned);
+            list.add(user);
+        }
+        Class<?> type;
+        if (users == 1) {
+            body = list.get(0);
+            type = User.class;
+        } else if ("protobuf".equals(format)) {
+            // protobuf has no top-level list, the converter wraps it the same way
+            JacksonProtobufHttpMessageConverter.Users wrapper = new JacksonProtobufHttpMessageConverter.Users();
+            wrapper.items = list;
+            body = wrapper;
+            type = JacksonProtobufHttpMessageConverter.Users.class;
+        } else {
+            body = list;
+            type = User[].class;
+        }
+
+        switch (format) {
+        case "json":
+            writer = new ObjectMapper().writerFor(type);
+            reader = new ObjectMapper().readerFor(type);
+            break;
+        case "cbor":
+            writer = new ObjectMapper(new CBORFactory()).writerFor(type);
+            reader = new ObjectMapper(new CBORFactory()).readerFor(type);
+            break;
+        case "smile":
+            writer = new ObjectMapper(new SmileFactory()).writerFor(type);
+            reader = new ObjectMapper(new SmileFactory()).readerFor(type);
+            break;
+        case "protobuf":
+            ProtobufMapper mapper = new ProtobufMapper();
+            writer = mapper.writerFor(type).with(mapper.generateSchemaFor(type));
+            reader = mapper.readerFor(type).with(mapper.generateSchemaFor(type));
+            break;
+        default:
+            throw new IllegalArgumentException("format " + format);
+        }
+        if (body instanceof List) {
+            body = ((List<?>) body).toArray(new User[0]);
+        }
+        encoded = writer.writeValueAsBytes(body);
+        System.out.printf("%n%s, %d user(s): %d bytes%n", format, users, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return writer.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return reader.readValue(encoded);
+    }
+}
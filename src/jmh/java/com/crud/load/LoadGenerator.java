@@ -0,0 +1,283 @@
+package com.crud.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.crud.MicroserviceCrudApplication;
+import com.crud.reactive.ReactiveCrudApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Open-model HTTP load generator for the users/accounts API.
+ * <p>
+ * Requests are issued on a fixed schedule ({@code --rate} per second),
+ * whatever the server's response time, and each latency is measured from
+ * the request's <em>intended</em> start. A stall therefore shows up in every
+ * request that should have been sent during it, instead of silently pausing
+ * the client (coordinated omission). Service time, from the actual send, is
+ * recorded alongside for comparison.
+ * <p>
+ * Without {@code --target} the application is started in this JVM on a
+ * random port against its embedded H2: the servlet stack, or with
+ * {@code --stack=reactive} the WebFlux/R2DBC one. Users and accounts
+ * {@code 1..--users} are seeded through the batch endpoints (one PUT per user
+ * on the reactive stack, which has none). Per-operation p50/p90/p99/p99.9/max
+ * are printed and written, with the full HdrHistogram distributions
+ * ({@code .hgrm}), to {@code --report-dir}. For an in-JVM run the report also
+ * holds the heap and live-thread peaks sampled during the measured window;
+ * they include the generator's own sender threads, the same for both stacks,
+ * so compare stacks at equal {@code --connections}.
+ * <p>
+ * Example: {@code --rate=2000 --duration=120 --connections=500
+ * --mix=get-user:80,put-user:10,patch-account:10}
+ */
+public final class LoadGenerator {
+
+    private static final int SEED_CHUNK = 1000;
+
+    private static final long SAMPLE_INTERVAL_MS = 200;
+
+    private final CloseableHttpClient client;
+    private final String base;
+    private final LoadOptions options;
+    private final Operation.Ids ids;
+    private final Map<Operation, Recorder> responseTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Recorder> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final AtomicLong maxHeapBytes = new AtomicLong();
+    private final AtomicLong maxThreads = new AtomicLong();
+
+    private LoadGenerator(CloseableHttpClient client, String base, LoadOptions options) {
+        this.client = client;
+        this.base = base;
+        this.options = options;
+        this.ids = new Operation.Ids(options.users);
+        for (Operation operation : options.mix.keySet()) {
+            responseTimes.put(operation, new Recorder(3));
+            serviceTimes.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        ConfigurableApplicationContext app = null;
+        String base = options.target;
+        if (base.isEmpty()) {
+            app = options.stack.equals("reactive")
+                    ? new SpringApplicationBuilder(ReactiveCrudApplication.class).profiles("reactive")
+                            .web(WebApplicationType.REACTIVE).properties("server.port=0").run()
+                    : new SpringApplicationBuilder(MicroserviceCrudApplication.class).properties("server.port=0").run();
+            base = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+        }
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(options.connections);
+        connections.setDefaultMaxPerRoute(options.connections);
+        try (CloseableHttpClient client = HttpClients.custom().setConnectionManager(connections).build()) {
+            LoadGenerator generator = new LoadGenerator(client, base, options);
+            generator.seed();
+            generator.run(app != null);
+            generator.report(app != null);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    private void seed() throws IOException {
+        if (options.stack.equals("reactive")) {
+            for (long id = 1; id <= options.users; id++) {
+                String user = Operation.user(id);
+                HttpPut put = new HttpPut(base + "/users/" + id);
+                put.setEntity(Operation.json(user.substring(0, user.length() - 1) + ",\"account\":[{\"accountNumber\":"
+                        + id + ",\"accountBalance\":1000.00}]}"));
+                execute(put, "/users/" + id);
+            }
+            return;
+        }
+        for (int from = 1; from <= options.users; from += SEED_CHUNK) {
+            StringBuilder users = new StringBuilder("[");
+            StringBuilder accounts = new StringBuilder("[");
+            for (long id = from; id < from + SEED_CHUNK && id <= options.users; id++) {
+                String separator = id == from ? "" : ",";
+                users.append(separator).append(Operation.user(id));
+                accounts.append(separator).append("{\"accountNumber\":").append(id).append(",\"accountBalance\":1000.00}");
+            }
+            post("/users/batch", users.append(']').toString());
+            post("/accounts/batch", accounts.append(']').toString());
+        }
+    }
+
+    private void post(String path, String body) throws IOException {
+        HttpPost post = new HttpPost(base + path);
+        post.setEntity(Operation.json(body));
+        execute(post, path);
+    }
+
+    private void execute(HttpUriRequest request, String path) throws IOException {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            if (response.getStatusLine().getStatusCode() >= 300) {
+                throw new IOException("Seeding " + path + " failed: " + response.getStatusLine());
+            }
+        }
+    }
+
+    private void run(boolean sample) throws InterruptedException {
+        List<Operation> wheel = new ArrayList<>();
+        options.mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+        ExecutorService senders = Executors.newFixedThreadPool(options.connections);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        if (sample) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            sampler.scheduleAtFixedRate(() -> {
+                if (System.nanoTime() >= measureFrom) {
+                    maxHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    maxThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+                }
+            }, SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        for (long i = 0;; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = wheel.get(ThreadLocalRandom.current().nextInt(wheel.size()));
+            boolean measured = intended >= measureFrom;
+            // queued behind busy senders if the server lags; the wait still counts from `intended`
+            senders.execute(() -> send(operation, intended, measured));
+        }
+        senders.shutdown();
+        senders.awaitTermination(10, TimeUnit.MINUTES);
+        sampler.shutdownNow();
+    }
+
+    private void send(Operation operation, long intended, boolean measured) {
+        long started = System.nanoTime();
+        int status;
+        try (CloseableHttpResponse response = client.execute(operation.request(base, ids))) {
+            EntityUtils.consume(response.getEntity());
+            status = response.getStatusLine().getStatusCode();
+        } catch (IOException e) {
+            status = -1;
+        }
+        long done = System.nanoTime();
+        if (measured) {
+            responseTimes.get(operation).recordValue(done - intended);
+            serviceTimes.get(operation).recordValue(done - started);
+            if (status < 0 || status >= 500) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private void report(boolean sampled) throws IOException {
+        File dir = new File(options.reportDir);
+        dir.mkdirs();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("stack", options.target.isEmpty() ? options.stack : options.target);
+        report.put("rate", options.rate);
+        report.put("durationSeconds", options.durationSeconds);
+        report.put("connections", options.connections);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        Histogram all = new Histogram(3);
+
+        System.out.printf("%-14s %9s %7s %9s %9s %9s %9s %9s %12s%n", "operation", "count", "errors", "p50 ms",
+                "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+        for (Operation operation : responseTimes.keySet()) {
+            Histogram response = responseTimes.get(operation).getIntervalHistogram();
+            Histogram service = serviceTimes.get(operation).getIntervalHistogram();
+            all.add(response);
+            Map<String, Object> entry = summary(response);
+            entry.put("errors", errors.get(operation).sum());
+            entry.put("service", summary(service));
+            operations.put(operation.label, entry);
+            print(operation.label, response, errors.get(operation).sum(), service);
+            try (PrintStream out = new PrintStream(new File(dir, operation.label + ".hgrm"), "UTF-8")) {
+                response.outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+        print("all", all, errors.values().stream().mapToLong(LongAdder::sum).sum(), null);
+        operations.put("all", summary(all));
+        report.put("operations", operations);
+        if (sampled) {
+            Map<String, Object> resources = new LinkedHashMap<>();
+            resources.put("heapUsedMaxMb", maxHeapBytes.get() / (1024.0 * 1024.0));
+            resources.put("liveThreadsMax", maxThreads.get());
+            report.put("resources", resources);
+            System.out.printf("heap used max %.1f MB, live threads max %d%n", maxHeapBytes.get() / (1024.0 * 1024.0),
+                    maxThreads.get());
+        }
+
+        File json = new File(dir, "report.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(json, report);
+        System.out.println("report written to " + json.getAbsolutePath());
+    }
+
+    private static void print(String label, Histogram response, long errors, Histogram service) {
+        System.out.printf("%-14s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %12s%n", label, response.getTotalCount(), errors,
+                millis(response, 50), millis(response, 90), millis(response, 99), millis(response, 99.9),
+                response.getMaxValue() / 1e6, service == null ? "" : String.format("%.2f", millis(service, 99)));
+    }
+
+    private static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50Ms", millis(histogram, 50));
+        summary.put("p90Ms", millis(histogram, 90));
+        summary.put("p99Ms", millis(histogram, 99));
+        summary.put("p999Ms", millis(histogram, 99.9));
+        summary.put("maxMs", histogram.getMaxValue() / 1e6);
+        return summary;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+}
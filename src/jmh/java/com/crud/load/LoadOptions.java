@@ -0,0 +1,58 @@
+package com.crud.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code --key=value} options of {@link LoadGenerator}, with defaults.
+ */
+final class LoadOptions {
+
+    /** requests per second, spread evenly */
+    final double rate;
+    final long warmupSeconds;
+    final long durationSeconds;
+    /** concurrent requests (and connections); late requests wait for one and keep their intended start */
+    final int connections;
+    /** users and accounts seeded before the run */
+    final int users;
+    /** base URL; empty starts the {@link #stack} application in this JVM on a random port */
+    final String target;
+    /** "mvc" (MicroserviceCrudApplication) or "reactive" (ReactiveCrudApplication) */
+    final String stack;
+    /** operation name -> weight */
+    final Map<Operation, Integer> mix;
+    final String reportDir;
+
+    private LoadOptions(Map<String, String> args) {
+        rate = Double.parseDouble(args.getOrDefault("rate", "500"));
+        warmupSeconds = Long.parseLong(args.getOrDefault("warmup", "10"));
+        durationSeconds = Long.parseLong(args.getOrDefault("duration", "60"));
+        connections = Integer.parseInt(args.getOrDefault("connections", "200"));
+        users = Integer.parseInt(args.getOrDefault("users", "10000"));
+        target = args.getOrDefault("target", "");
+        stack = args.getOrDefault("stack", "mvc");
+        if (!stack.equals("mvc") && !stack.equals("reactive")) {
+            throw new IllegalArgumentException("Unknown stack " + stack);
+        }
+        reportDir = args.getOrDefault("report-dir", "build/load");
+        mix = new LinkedHashMap<>();
+        for (String entry : args.getOrDefault("mix",
+                "get-user:50,get-account:20,post-user:8,put-user:8,patch-user:6,patch-account:4,delete-user:4")
+                .split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(Operation.named(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return new LoadOptions(values);
+    }
+}
@@ -0,0 +1,126 @@
+package com.crud.load;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+/**
+ * The requests a load run mixes. Seeded users are {@code 1..users} and
+ * accounts {@code 1..users}; POSTed users get fresh ids, which DELETE then
+ * consumes so reads keep hitting existing rows.
+ */
+enum Operation {
+
+    GET_USER("get-user") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            return new HttpGet(base + "/users/" + ids.seeded());
+        }
+    },
+    GET_ACCOUNT("get-account") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            return new HttpGet(base + "/accounts/" + ids.seeded());
+        }
+    },
+    // ids that never exist, the not-found path
+    GET_USER_MISSING("get-user-missing") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            return new HttpGet(base + "/users/-" + ids.seeded());
+        }
+    },
+    POST_USER("post-user") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            long id = ids.next.getAndIncrement();
+            ids.created.add(id);
+            HttpPost post = new HttpPost(base + "/users");
+            post.setEntity(json(user(id)));
+            return post;
+        }
+    },
+    PUT_USER("put-user") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            long id = ids.seeded();
+            HttpPut put = new HttpPut(base + "/users/" + id);
+            put.setEntity(json(user(id)));
+            return put;
+        }
+    },
+    PATCH_USER("patch-user") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            HttpPatch patch = new HttpPatch(base + "/users/" + ids.seeded());
+            patch.setEntity(json("{\"email\":\"patched" + ThreadLocalRandom.current().nextInt(1000) + "@abc.com\"}"));
+            return patch;
+        }
+    },
+    PATCH_ACCOUNT("patch-account") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            HttpPatch patch = new HttpPatch(base + "/accounts/" + ids.seeded());
+            patch.setEntity(json("{\"accountBalance\":" + ThreadLocalRandom.current().nextInt(100000) + ".25}"));
+            return patch;
+        }
+    },
+    DELETE_USER("delete-user") {
+        @Override
+        HttpUriRequest request(String base, Ids ids) {
+            Long id = ids.created.poll();
+            // nothing posted yet: delete what a POST would have created next
+            return new HttpDelete(base + "/users/" + (id != null ? id : ids.next.get() - 1));
+        }
+    };
+
+    static final class Ids {
+        final int seeded;
+        final AtomicLong next;
+        final ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+
+        Ids(int seeded) {
+            this.seeded = seeded;
+            this.next = new AtomicLong(seeded + 1L);
+        }
+
+        long seeded() {
+            return ThreadLocalRandom.current().nextLong(1, seeded + 1L);
+        }
+    }
+
+    final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    abstract HttpUriRequest request(String base, Ids ids);
+
+    static Operation named(String label) {
+        for (Operation operation : values()) {
+            if (operation.label.equals(label)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + label);
+    }
+
+    static String user(long id) {
+        return "{\"userId\":" + id + ",\"firstName\":\"Load\",\"lastName\":\"Test\",\"email\":\"load" + id
+                + "@abc.com\",\"phoneNumber\":7878789878,\"addressLine1\":\"Pune\",\"addressLine2\":\"India\"}";
+    }
+
+    static StringEntity json(String body) {
+        return new StringEntity(body, ContentType.APPLICATION_JSON);
+    }
+}
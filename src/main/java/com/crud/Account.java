@@ -1,20 +1,36 @@
 package com.crud;
 
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.NotFound;
+import org.hibernate.annotations.NotFoundAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
 @Table(name = "account")
 public class Account {
 	@Id
 	private Long accountNumber;
-	private Double accountBalance;
+	// fixed-point hundredths, exposed as the decimal accountBalance
+	@Column(name = "balance_minor")
+	private long balanceMinor;
+	@Version
+	private long version;
 	
+	// owner is accepted on input but not written back, the user graph is not serialised from its accounts;
+	// on an account shard the owner row is not there (users stay on the primary) and resolves to null
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
 	 @ManyToOne(cascade = CascadeType.ALL)
+	 @NotFound(action = NotFoundAction.IGNORE)
 	    @JoinColumn(name = "user_id")
 	    private User user;
 
@@ -23,7 +39,10 @@ public class Account {
 	public Account(Long accountNumber, Double accountBalance) {
 		super();
 		this.accountNumber = accountNumber;
-		this.accountBalance = accountBalance;
+		setAccountBalance(accountBalance);
+	}
+
+	public Account() {
 	}
 	public User getUser() {
 		return user;
@@ -38,9 +57,20 @@ public class Account {
 		this.accountNumber = accountNumber;
 	}
 	public Double getAccountBalance() {
-		return accountBalance;
+		return Money.toMajor(balanceMinor);
 	}
 	public void setAccountBalance(Double accountBalance) {
-		this.accountBalance = accountBalance;
+		this.balanceMinor = accountBalance == null ? 0 : Money.toMinor(accountBalance);
+	}
+	@JsonIgnore
+	public long getBalanceMinor() {
+		return balanceMinor;
+	}
+	public void setBalanceMinor(long balanceMinor) {
+		this.balanceMinor = balanceMinor;
+	}
+	@JsonIgnore
+	public long getVersion() {
+		return version;
 	}
 }
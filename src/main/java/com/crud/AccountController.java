@@ -1,11 +1,16 @@
 package com.crud;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,57 +19,184 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.crud.Account;
 import com.crud.AccountRepository;
 import com.crud.error.AccountNotFoundException;
+import com.crud.error.AccountUnSupportedFieldPatchException;
+import com.crud.error.PreconditionFailedException;
 @RestController
 public class AccountController {
+
+    // shared with the reactive controllers
+    public static final FieldMask PATCHABLE = FieldMask.builder()
+            .required("accountBalance", "balanceMinor", Money::toMinorOrNull)
+            .build();
+
 	@Autowired
     private AccountRepository repository;
 
+	@Autowired
+    private KeysetPager pager;
+
+	@Autowired
+    private BatchInserter batchInserter;
+
+	@Autowired
+    private AccountLoader loader;
+
+	@Autowired
+    private TransferService transfers;
+
+	@Autowired
+    private KnownIds knownIds;
+
+	@Autowired
+    private ResponseBodyCache bodies;
+
+	@Autowired
+    private AccountOwners owners;
+
     // Find
     @GetMapping("/accounts")
     List<Account> findAll() {
         return repository.findAll();
     }
 
+    // Find one keyset page, continue with the returned "next" token
+    @GetMapping("/accounts/page")
+    KeysetPage<Account> findPage(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        return pager.page(after, size, repository::findByAccountNumberGreaterThanOrderByAccountNumberAsc, Account::getAccountNumber);
+    }
+
+    // Find all, written to the response page by page instead of buffered in one list
+    @GetMapping(value = "/accounts/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    StreamingResponseBody stream(@RequestParam(required = false) Integer size) {
+        return pager.stream(size, repository::findByAccountNumberGreaterThanOrderByAccountNumberAsc, Account::getAccountNumber);
+    }
+
     // Save
     @PostMapping("/accounts")
     //return 201 instead of 200
     @ResponseStatus(HttpStatus.CREATED)
     Account newAccount(@RequestBody Account newAccount) {
-        return repository.save(newAccount);
+        Account saved = repository.save(newAccount);
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, saved.getAccountNumber());
+        knownIds.accounts().add(saved.getAccountNumber());
+        owners.accountsChanged(saved.getAccountNumber());
+        return saved;
     }
 
-    // Find
+    // Save many, persisted in chunked batch transactions with one result per item
+    @PostMapping("/accounts/batch")
+    BatchResult newAccounts(@RequestBody List<Account> newAccounts) {
+        BatchResult result = batchInserter.insert(newAccounts, Account::getAccountNumber);
+        List<Long> accountNumbers = new ArrayList<>(newAccounts.size());
+        for (Account account : newAccounts) {
+            bodies.invalidate(ResponseBodyCache.ACCOUNT, account.getAccountNumber());
+            knownIds.accounts().add(account.getAccountNumber());
+            accountNumbers.add(account.getAccountNumber());
+        }
+        owners.accountsChanged(accountNumbers);
+        return result;
+    }
+
+    // Move funds between two accounts atomically, 409 if the source cannot cover the amount
+    @PostMapping("/accounts/transfer")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    void transfer(@RequestBody TransferRequest transfer) {
+        transfers.transfer(transfer.getFrom(), transfer.getTo(), transfer.getAmount());
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, transfer.getFrom());
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, transfer.getTo());
+        owners.accountsChanged(transfer.getFrom(), transfer.getTo());
+    }
+
+    // Find; a revalidation (If-None-Match) reads only the version and answers 304 while it still matches,
+    // JSON is written from the cached encoding (gzipped when accepted) while the ETag still matches it
     @GetMapping("/accounts/{accountNumber}")
-    Account findOne(@PathVariable Long accountNumber) {
-        return repository.findById(accountNumber)
-                .orElseThrow(() -> new AccountNotFoundException(accountNumber));
+    ResponseEntity<?> findOne(@PathVariable Long accountNumber,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // an account number the filter has never seen does not exist, skip the query
+        if (!knownIds.accounts().mightContain(accountNumber)) {
+            throw new AccountNotFoundException(accountNumber);
+        }
+        if (ifNoneMatch != null) {
+            Optional<Long> version = repository.findVersionByAccountNumber(accountNumber);
+            String tag = version.isPresent()
+                    ? bodies.responseTag(EntityTags.of(version.get()), accept, acceptEncoding) : null;
+            if (tag != null && EntityTags.matches(ifNoneMatch, tag)) {
+                return bodies.notModified(tag);
+            }
+        }
+        Account account = loader.findById(accountNumber)
+                .orElseThrow(() -> {
+                    knownIds.accounts().falsePositive();
+                    return new AccountNotFoundException(accountNumber);
+                });
+        return bodies.respond(ResponseBodyCache.ACCOUNT, accountNumber, EntityTags.of(account), account, accept,
+                acceptEncoding);
     }
 
-    // Save or update
+    // Save or update, a single upsert statement; with If-Match only an update of that version
     @PutMapping("/accounts/{accountNumber}")
-    Account saveOrUpdate(@RequestBody Account newAccount, @PathVariable Long accountNumber) {
-
-         return repository.findById(accountNumber)
-                .map(x -> {
-                    x.setAccountNumber(newAccount.getAccountNumber());
-                    x.setAccountBalance(newAccount.getAccountBalance());
-                    return repository.save(x);
-                })
-                .orElseGet(() -> {
-                    newAccount.setAccountNumber(accountNumber);
-                    return repository.save(newAccount);
-                });
+    Account saveOrUpdate(@RequestBody Account newAccount, @PathVariable Long accountNumber,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        newAccount.setAccountNumber(accountNumber);
+        if (ifMatch == null) {
+            repository.upsert(newAccount);
+        } else if (repository.replace(newAccount, EntityTags.requiredVersion(ifMatch)) != 1) {
+            // an account that does not exist matches no tag, not even *
+            throw new PreconditionFailedException(ifMatch);
+        }
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, accountNumber);
+        knownIds.accounts().add(accountNumber);
+        owners.accountsChanged(accountNumber);
+        return newAccount;
+    }
+
+    // JSON Merge Patch: one UPDATE of just the fields in the body
+    @PatchMapping(value = "/accounts/{accountNumber}", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    void patch(@RequestBody Map<String, Object> update, @PathVariable Long accountNumber,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Map<String, Object> changes = PATCHABLE.resolve(update, AccountUnSupportedFieldPatchException::new);
+        int found = ifMatch == null ? repository.patch(accountNumber, changes)
+                : repository.patch(accountNumber, changes, EntityTags.requiredVersion(ifMatch));
+        if (found == 0) {
+            throw new AccountNotFoundException(accountNumber);
+        }
+        if (found < 0) {
+            throw new PreconditionFailedException(ifMatch);
+        }
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, accountNumber);
+        owners.accountsChanged(accountNumber);
+
     }
 
     @DeleteMapping("/accounts/{accountNumber}")
     void deleteAccount(@PathVariable Long accountNumber) {
+        // the owner is only known while the row exists
+        List<Long> owner = owners.of(Collections.singletonList(accountNumber));
         repository.deleteById(accountNumber);
+        bodies.invalidate(ResponseBodyCache.ACCOUNT, accountNumber);
+        knownIds.accounts().removed();
+        owners.evict(owner);
+    }
+
+    // Size and false-positive rates of the account number filter
+    @GetMapping("/accounts/id-filter-stats")
+    Map<String, Object> idFilterStats() {
+        return knownIds.accounts().stats();
     }
 
 }
@@ -0,0 +1,194 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import com.crud.replica.ReplicaContext;
+import com.crud.timing.RequestTiming;
+
+/**
+ * Coalesces concurrent account lookups.
+ * <p>
+ * Callers asking for an id that is already waiting for the next batch share
+ * its result instead of adding their own lookup. Once a batch has been sent
+ * to the database nobody joins it any more: its read may predate a write the
+ * later caller has already seen committed. Distinct ids that arrive
+ * within {@code crud.accounts.batch-window-micros} of each other are fetched
+ * together with one {@code findAllById}, i.e. a single
+ * {@code WHERE account_number IN (...)} query, and the results fanned out to
+ * every waiter. A batch of one id still goes through {@code findById}.
+ * Batches are read on loader threads, so a request pinned to the primary
+ * for read-your-writes is not batched and reads on its own thread. A request
+ * timed for {@code Server-Timing} is batched like any other and charged the
+ * statements and SQL time of the whole batch it waited for.
+ */
+@Component
+public class AccountLoader {
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Value("${crud.accounts.batch-window-micros:1000}")
+    private long windowMicros;
+
+    @Value("${crud.accounts.batch-max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${crud.accounts.loader-threads:4}")
+    private int loaderThreads;
+
+    @Value("${crud.accounts.lookup-timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private final Object lock = new Object();
+
+    // lookups dispatched together, and the timing of their read, which every timed request among them is charged
+    private static final class Batch {
+        final Map<Long, CompletableFuture<Optional<Account>>> lookups = new LinkedHashMap<>();
+        volatile RequestTiming timing;
+    }
+
+    // lookups waiting for the next batch; a dispatched batch leaves it, so a later caller never joins a read
+    // that may have started before its own write committed
+    private Batch pending = new Batch();
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService loaders;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger ids = new AtomicInteger();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "account-loader-timer"));
+        loaders = Executors.newFixedThreadPool(loaderThreads, r -> daemon(r, "account-loader-" + ids.incrementAndGet()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        loaders.shutdownNow();
+    }
+
+    public Optional<Account> findById(Long accountNumber) {
+        // batches run on loader threads, where the pin (thread-bound) does not apply
+        if (ReplicaContext.isPrimaryPinned()) {
+            return repository.findById(accountNumber);
+        }
+        Batch batch;
+        CompletableFuture<Optional<Account>> future;
+        Batch full = null;
+        boolean first = false;
+        if (windowMicros <= 0) {
+            batch = new Batch();
+            future = new CompletableFuture<>();
+            batch.lookups.put(accountNumber, future);
+            full = batch;
+        } else {
+            synchronized (lock) {
+                batch = pending;
+                future = batch.lookups.get(accountNumber);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    batch.lookups.put(accountNumber, future);
+                    first = batch.lookups.size() == 1;
+                    if (batch.lookups.size() >= maxBatchSize) {
+                        full = batch;
+                        pending = new Batch();
+                    }
+                }
+            }
+        }
+        if (full != null) {
+            Batch dispatched = full;
+            loaders.execute(() -> load(dispatched));
+        } else if (first) {
+            scheduler.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+        }
+        return await(batch, future, accountNumber);
+    }
+
+    private void flush() {
+        Batch batch;
+        synchronized (lock) {
+            if (pending.lookups.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new Batch();
+        }
+        loaders.execute(() -> load(batch));
+    }
+
+    private void load(Batch batch) {
+        RequestTiming timing = RequestTiming.detached();
+        try {
+            Map<Long, Account> found = timing.record(() -> read(batch.lookups.keySet()));
+            batch.timing = timing;
+            batch.lookups.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+        } catch (RuntimeException e) {
+            batch.timing = timing;
+            batch.lookups.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private Map<Long, Account> read(Collection<Long> accountNumbers) {
+        Map<Long, Account> found = new HashMap<>();
+        if (accountNumbers.size() == 1) {
+            Long id = accountNumbers.iterator().next();
+            repository.findById(id).ifPresent(a -> found.put(id, a));
+        } else {
+            for (Account account : repository.findAllById(new ArrayList<>(accountNumbers))) {
+                found.put(account.getAccountNumber(), account);
+            }
+        }
+        return found;
+    }
+
+    private Optional<Account> await(Batch batch, CompletableFuture<Optional<Account>> future, Long accountNumber) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Account lookup timed out : " + accountNumber, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for account " + accountNumber, e);
+        } finally {
+            RequestTiming timing = RequestTiming.current();
+            if (timing != null && batch.timing != null) {
+                timing.include(batch.timing);
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+}
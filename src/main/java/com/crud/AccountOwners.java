@@ -0,0 +1,84 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.crud.ledger.Ledger;
+import com.crud.replica.ReplicaContext;
+
+/**
+ * Keeps the cached user views, which embed the user's accounts, in step with
+ * account writes.
+ * <p>
+ * Every handler that writes accounts reports them here after the write has
+ * committed, and the users owning them are evicted from {@link UserCache}
+ * and their encoded bodies from {@link ResponseBodyCache}; with the
+ * {@link Ledger} enabled it also forgets the balances it holds for them.
+ * Owners are looked up on the primary, a replica may not have the write yet.
+ * A delete has to look the owner up with {@link #of} before the row goes and
+ * {@link #evict} it afterwards.
+ */
+@Component
+public class AccountOwners {
+
+    // bound parameters per owner query
+    private static final int CHUNK = 1000;
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Autowired
+    private UserCache users;
+
+    @Autowired
+    private ResponseBodyCache bodies;
+
+    // looked up late, the ledger reports its own flushes here
+    @Autowired
+    private ObjectProvider<Ledger> ledger;
+
+    /**
+     * The distinct owners of the given accounts; accounts without an owner or
+     * that do not exist contribute none.
+     */
+    public List<Long> of(Collection<Long> accountNumbers) {
+        List<Long> numbers = new ArrayList<>(accountNumbers);
+        Set<Long> owners = new LinkedHashSet<>();
+        boolean wasPinned = ReplicaContext.pinPrimary();
+        try {
+            for (int from = 0; from < numbers.size(); from += CHUNK) {
+                owners.addAll(repository.findOwnerIds(numbers.subList(from, Math.min(numbers.size(), from + CHUNK))));
+            }
+        } finally {
+            ReplicaContext.restore(wasPinned);
+        }
+        return new ArrayList<>(owners);
+    }
+
+    public void accountsChanged(Long... accountNumbers) {
+        accountsChanged(Arrays.asList(accountNumbers));
+    }
+
+    public void accountsChanged(Collection<Long> accountNumbers) {
+        if (!accountNumbers.isEmpty()) {
+            ledger.ifAvailable(l -> l.balancesWritten(accountNumbers));
+            evict(of(accountNumbers));
+        }
+    }
+
+    public void evict(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            users.invalidate(userId);
+            bodies.invalidate(ResponseBodyCache.USER, userId);
+        }
+    }
+
+}
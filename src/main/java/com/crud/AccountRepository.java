@@ -1,8 +1,72 @@
 package com.crud;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface AccountRepository extends JpaRepository<Account, Long>, AccountRepositoryCustom {
+
+    // keyset page: rows strictly after the last accountNumber of the previous page
+    List<Account> findByAccountNumberGreaterThanOrderByAccountNumberAsc(Long accountNumber, Pageable pageable);
+
+    // [userId, accountNumber, balanceMinor] rows in user order, no entities are hydrated
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a.user.userId, a.accountNumber, a.balanceMinor from Account a"
+            + " where a.user is not null order by a.user.userId, a.accountNumber")
+    Stream<Object[]> streamOwnedOrderByUserId();
+
+    // key scan for the id filter, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("select a.accountNumber from Account a")
+    Stream<Long> streamAllAccountNumbers();
+
+    // conditional GET: the current version without hydrating the account
+    @Query("select a.version from Account a where a.accountNumber = :accountNumber")
+    Optional<Long> findVersionByAccountNumber(@Param("accountNumber") Long accountNumber);
+
+    // owners of the given accounts, to evict the cached users embedding them
+    @Query("select distinct a.user.userId from Account a where a.accountNumber in :accountNumbers")
+    List<Long> findOwnerIds(@Param("accountNumbers") Collection<Long> accountNumbers);
+
+    // [userId, account] for the accounts of the given users, where the user's own collection does not reach
+    // them: on account shards other than the primary
+    @Query("select a.user.userId, a from Account a where a.user.userId in :userIds"
+            + " order by a.user.userId, a.accountNumber")
+    List<Object[]> findOwnedBy(@Param("userIds") Collection<Long> userIds);
+
+    // conditional GET of a user: [accountNumber, version] of the accounts its representation embeds
+    @Query("select a.accountNumber, a.version from Account a where a.user.userId = :userId")
+    List<Object[]> findVersionsOwnedBy(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Account a where a.user.userId = :userId")
+    int deleteOwnedBy(@Param("userId") Long userId);
+
+    // transfers: balance arithmetic happens in the UPDATE, a debit never overdraws. Declared writable,
+    // query methods otherwise inherit the read-only default of the repository implementation
+    @Modifying
+    @Transactional
+    @Query("update Account a set a.balanceMinor = a.balanceMinor - :amount, a.version = a.version + 1"
+            + " where a.accountNumber = :accountNumber and a.balanceMinor >= :amount")
+    int debit(@Param("accountNumber") Long accountNumber, @Param("amount") long amountMinor);
 
-public interface AccountRepository extends JpaRepository<Account, Long> {
+    @Modifying
+    @Transactional
+    @Query("update Account a set a.balanceMinor = a.balanceMinor + :amount, a.version = a.version + 1"
+            + " where a.accountNumber = :accountNumber")
+    int credit(@Param("accountNumber") Long accountNumber, @Param("amount") long amountMinor);
 }
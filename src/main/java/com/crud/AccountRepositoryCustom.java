@@ -0,0 +1,35 @@
+package com.crud;
+
+import java.util.Map;
+
+public interface AccountRepositoryCustom {
+
+    /**
+     * Writes only the given attributes with a single UPDATE.
+     *
+     * @return 1 if the account exists, 0 if not
+     */
+    int patch(Long accountNumber, Map<String, Object> changes);
+
+    /**
+     * As {@link #patch(Long, Map)}, written only while the account's version
+     * is still {@code expectedVersion} (an {@code If-Match} precondition).
+     *
+     * @return 1 if written or already matching, 0 if the account does not
+     *         exist, -1 if its version has moved on
+     */
+    int patch(Long accountNumber, Map<String, Object> changes, Long expectedVersion);
+
+    /**
+     * Replaces the balance of an existing account while its version is still
+     * {@code expectedVersion} (any version when null). Never inserts.
+     *
+     * @return as {@link #patch(Long, Map, Long)}
+     */
+    int replace(Account account, Long expectedVersion);
+
+    /**
+     * Inserts the account or updates its balance with one statement.
+     */
+    void upsert(Account account);
+}
@@ -0,0 +1,53 @@
+package com.crud;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+    // PUT /accounts/{accountNumber} never changes the owner, so user_id is left out
+    static final List<String> COLUMNS = Arrays.asList("account_number", "balance_minor");
+
+    static final List<String> OWNED_COLUMNS = Arrays.asList("account_number", "balance_minor", "user_id");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Upserter upserter;
+
+    @Override
+    @Transactional
+    public int patch(Long accountNumber, Map<String, Object> changes) {
+        return FieldMaskUpdates.update(entityManager, "Account", "accountNumber", "version", accountNumber, changes);
+    }
+
+    @Override
+    @Transactional
+    public int patch(Long accountNumber, Map<String, Object> changes, Long expectedVersion) {
+        return FieldMaskUpdates.update(entityManager, "Account", "accountNumber", "version", accountNumber, changes,
+                expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public int replace(Account account, Long expectedVersion) {
+        return patch(account.getAccountNumber(),
+                Collections.singletonMap("balanceMinor", account.getBalanceMinor()), expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public void upsert(Account account) {
+        upserter.upsert("account", "account_number", COLUMNS, "version", account.getAccountNumber(),
+                account.getBalanceMinor());
+    }
+}
@@ -0,0 +1,24 @@
+package com.crud;
+
+/**
+ * Read-only view of an account, built from query columns rather than a
+ * managed {@link Account}.
+ */
+public class AccountSummary {
+
+    private final Long accountNumber;
+    private final long balanceMinor;
+
+    public AccountSummary(Long accountNumber, long balanceMinor) {
+        this.accountNumber = accountNumber;
+        this.balanceMinor = balanceMinor;
+    }
+
+    public Long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public Double getAccountBalance() {
+        return Money.toMajor(balanceMinor);
+    }
+}
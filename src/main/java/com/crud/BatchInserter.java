@@ -0,0 +1,112 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.error.BatchTooLargeException;
+import com.crud.shard.AccountShards;
+
+/**
+ * Inserts new entities in chunked transactions.
+ * <p>
+ * Entities are persisted rather than saved: with assigned ids
+ * {@code repository.save} merges, which costs a select per row and defeats
+ * JDBC batching. Each chunk is flushed as a handful of batched inserts
+ * (see {@code hibernate.jdbc.batch_size}). When a chunk fails it is rolled
+ * back and replayed one row per transaction, so every item gets its own
+ * result. Sharded accounts are grouped by shard and each group inserted on
+ * its shard.
+ */
+@Component
+public class BatchInserter {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private AccountShards shards;
+
+    @Value("${crud.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${crud.batch.max-items:10000}")
+    private int maxItems;
+
+    public <T> BatchResult insert(List<T> items, Function<T, Long> idOf) {
+        if (items.size() > maxItems) {
+            throw new BatchTooLargeException(items.size(), maxItems);
+        }
+        BatchResult result = new BatchResult(items.size());
+        if (shards == null || items.isEmpty() || !(items.get(0) instanceof Account)) {
+            List<Integer> positions = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                positions.add(i);
+            }
+            insert(items, positions, idOf, result);
+            return result;
+        }
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Long id = idOf.apply(items.get(i));
+            byShard.computeIfAbsent(id == null ? 0 : shards.shardOf(id), shard -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> group : byShard.entrySet()) {
+            shards.on(group.getKey(), () -> {
+                insert(items, group.getValue(), idOf, result);
+                return null;
+            });
+        }
+        return result;
+    }
+
+    // positions: the indexes of items to insert, in the order they are reported
+    private <T> void insert(List<T> items, List<Integer> positions, Function<T, Long> idOf, BatchResult result) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < positions.size(); from += chunkSize) {
+            List<Integer> chunk = positions.subList(from, Math.min(from + chunkSize, positions.size()));
+            try {
+                tx.execute(status -> persistAll(items, chunk));
+                for (int i : chunk) {
+                    result.created(i, idOf.apply(items.get(i)));
+                }
+            } catch (RuntimeException chunkFailure) {
+                for (int i : chunk) {
+                    T item = items.get(i);
+                    try {
+                        tx.execute(status -> persistAll(items, Collections.singletonList(i)));
+                        result.created(i, idOf.apply(item));
+                    } catch (RuntimeException e) {
+                        result.failed(i, idOf.apply(item), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private Object persistAll(List<?> items, List<Integer> chunk) {
+        for (int i : chunk) {
+            entityManager.persist(items.get(i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return null;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch create, one entry per submitted item in request order.
+ */
+public class BatchResult {
+
+    public enum Status {
+        CREATED, FAILED
+    }
+
+    private int created;
+    private int failed;
+    private final List<Item> items;
+
+    public BatchResult(int size) {
+        this.items = new ArrayList<>(size);
+    }
+
+    void created(int index, Long id) {
+        created++;
+        items.add(new Item(index, id, Status.CREATED, null));
+    }
+
+    void failed(int index, Long id, String error) {
+        failed++;
+        items.add(new Item(index, id, Status.FAILED, error));
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public static class Item {
+        private final int index;
+        private final Long id;
+        private final Status status;
+        private final String error;
+
+        Item(int index, Long id, Status status, String error) {
+            this.index = index;
+            this.id = id;
+            this.status = status;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.crud;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over long keys, safe for concurrent adds and lookups.
+ * <p>
+ * Sized for an expected number of keys and false-positive rate. The k bit
+ * positions are derived from two 64-bit hashes of the key (Kirsch and
+ * Mitzenmacher), so one lookup costs two hash mixes and k word reads. Keys
+ * cannot be removed.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final long capacity;
+    private final AtomicLong keys = new AtomicLong();
+
+    public BloomFilter(long capacity, double falsePositiveRate) {
+        if (capacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("capacity " + capacity + ", false-positive rate " + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long wanted = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (wanted + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = wordCount * 64L;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / capacity * ln2)));
+        this.capacity = capacity;
+    }
+
+    public void add(long key) {
+        long h1 = Hashing.fmix64(key);
+        long h2 = Hashing.fmix64(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        keys.incrementAndGet();
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = Hashing.fmix64(key);
+        long h2 = Hashing.fmix64(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False-positive rate for the keys added so far, {@code (1 - e^(-kn/m))^k};
+     * it passes the configured rate once more than {@link #capacity} keys have
+     * been added.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashes * (double) keys.get() / bits), hashes);
+    }
+
+    public long keys() {
+        return keys.get();
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long bits() {
+        return bits;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+}
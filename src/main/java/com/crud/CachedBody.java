@@ -0,0 +1,63 @@
+package com.crud;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An encoded response body and the entity tag it was encoded for, held on
+ * the heap or in a direct (off-heap) buffer.
+ */
+public final class CachedBody {
+
+    private static final int COPY_CHUNK = 8192;
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_CHUNK]);
+
+    private final String etag;
+    private final String contentEncoding;
+    private final byte[] heap;
+    private final ByteBuffer direct;
+    private final int length;
+
+    CachedBody(String etag, String contentEncoding, byte[] bytes, boolean offHeap) {
+        this.etag = etag;
+        this.contentEncoding = contentEncoding;
+        this.length = bytes.length;
+        if (offHeap) {
+            this.heap = null;
+            this.direct = (ByteBuffer) ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        } else {
+            this.heap = bytes;
+            this.direct = null;
+        }
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    // null for identity
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (heap != null) {
+            out.write(heap);
+            return;
+        }
+        // servlet streams take arrays only, so off-heap bytes pass through one reused chunk
+        ByteBuffer source = direct.duplicate();
+        byte[] chunk = COPY_BUFFER.get();
+        while (source.hasRemaining()) {
+            int n = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+}
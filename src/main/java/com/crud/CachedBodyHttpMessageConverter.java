@@ -0,0 +1,46 @@
+package com.crud;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Copies a {@link CachedBody} to the response as is; the content type and
+ * encoding are set by {@link ResponseBodyCache} on the response entity.
+ */
+public class CachedBodyHttpMessageConverter extends AbstractHttpMessageConverter<CachedBody> {
+
+    public CachedBodyHttpMessageConverter() {
+        super(MediaType.ALL);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CachedBody.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CachedBody readInternal(Class<? extends CachedBody> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Cached bodies are write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(CachedBody body, MediaType contentType) {
+        return (long) body.getLength();
+    }
+
+    @Override
+    protected void writeInternal(CachedBody body, HttpOutputMessage outputMessage) throws IOException {
+        body.writeTo(outputMessage.getBody());
+    }
+
+}
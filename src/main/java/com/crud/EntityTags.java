@@ -0,0 +1,125 @@
+package com.crud;
+
+import java.util.List;
+
+import com.crud.error.PreconditionFailedException;
+
+/**
+ * Strong entity tags derived from row versions, so a tag can be checked
+ * against the database without building the representation.
+ * <p>
+ * An account's tag is its version. A user's tag is its own version and a
+ * digest of the (number, version) pairs of the accounts the representation
+ * embeds, so it changes whenever the serialized body does. {@code If-Match}
+ * is checked against the leading version only: user writes never touch its
+ * accounts' rows, and the accounts carry tags of their own. Every other
+ * representation of the same version (gzipped, CBOR, Smile, Protobuf)
+ * carries the tag with a suffix naming it, such as {@code -gzip}, which
+ * If-Match ignores.
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    public static String of(Account account) {
+        return of(account.getVersion());
+    }
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static String of(User user) {
+        List<Account> accounts = user.getAccount();
+        if (accounts == null || accounts.isEmpty()) {
+            return of(user.getVersion());
+        }
+        // order-independent, the collection order is not part of the version
+        long digest = 0;
+        for (Account account : accounts) {
+            digest += digest(account.getAccountNumber(), account.getVersion());
+        }
+        return "\"" + user.getVersion() + "." + Long.toHexString(digest) + "\"";
+    }
+
+    /**
+     * The tag {@link #of(User)} gives a user of {@code version} embedding
+     * accounts with these {@code [accountNumber, version]} rows, without
+     * loading either.
+     */
+    public static String of(long version, List<Object[]> accountVersions) {
+        if (accountVersions.isEmpty()) {
+            return of(version);
+        }
+        long digest = 0;
+        for (Object[] row : accountVersions) {
+            digest += digest((Long) row[0], (Long) row[1]);
+        }
+        return "\"" + version + "." + Long.toHexString(digest) + "\"";
+    }
+
+    private static long digest(long accountNumber, long version) {
+        return Hashing.fmix64(accountNumber * 0x9E3779B97F4A7C15L + version);
+    }
+
+    /**
+     * The tag of the gzip-encoded variant of a representation tagged
+     * {@code tag}: a strong tag has to differ between content codings.
+     */
+    public static String gzip(String tag) {
+        return variant(tag, "gzip");
+    }
+
+    /**
+     * The tag of the {@code name} representation of an entity tagged
+     * {@code tag}, so a validator of one representation never matches
+     * another.
+     */
+    public static String variant(String tag, String name) {
+        return tag.substring(0, tag.length() - 1) + "-" + name + "\"";
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header lists {@code tag}, using the weak
+     * comparison that header calls for.
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(tag) || candidate.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The version an {@code If-Match} header requires, or null for {@code *}.
+     * Weak, malformed or multiple tags can never match a strong tag here.
+     */
+    public static Long requiredVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if ("*".equals(tag)) {
+            return null;
+        }
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new PreconditionFailedException(ifMatch);
+        }
+        String value = tag.substring(1, tag.length() - 1);
+        int suffix = value.indexOf('-');
+        if (suffix > 0) {
+            value = value.substring(0, suffix);
+        }
+        int dot = value.indexOf('.');
+        try {
+            return Long.valueOf(dot < 0 ? value : value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException(ifMatch);
+        }
+    }
+
+}
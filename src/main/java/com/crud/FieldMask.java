@@ -0,0 +1,118 @@
+package com.crud;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Whitelist of the fields a PATCH may change, with their value types.
+ * <p>
+ * {@link #resolve} turns a JSON Merge Patch body into entity attribute
+ * values: absent fields are left alone, {@code null} clears a field, and
+ * unknown fields, values of the wrong type and {@code null} for a required
+ * field are rejected.
+ */
+public final class FieldMask {
+
+    private final Map<String, Field> fields;
+
+    private FieldMask(Map<String, Field> fields) {
+        this.fields = fields;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return attribute name to new value, in body order
+     */
+    public Map<String, Object> resolve(Map<String, Object> patch, Function<Set<String>, RuntimeException> unsupported) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Set<String> rejected = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            Field field = fields.get(entry.getKey());
+            Object value = entry.getValue();
+            if (field == null) {
+                rejected.add(entry.getKey());
+                continue;
+            }
+            Object converted = value == null ? null : field.convert.apply(value);
+            if (converted == null && (value != null || !field.nullable)) {
+                rejected.add(entry.getKey());
+                continue;
+            }
+            changes.put(field.attribute, converted);
+        }
+        if (!rejected.isEmpty()) {
+            throw unsupported.apply(rejected);
+        }
+        return changes;
+    }
+
+    private static Object toLong(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+            return ((Number) value).longValue();
+        }
+        return null;
+    }
+
+    private static Object toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    private static Object toText(Object value) {
+        return value instanceof String ? value : null;
+    }
+
+    private static final class Field {
+        final String attribute;
+        final Function<Object, Object> convert;
+        final boolean nullable;
+
+        Field(String attribute, Function<Object, Object> convert, boolean nullable) {
+            this.attribute = attribute;
+            this.convert = convert;
+            this.nullable = nullable;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Map<String, Field> fields = new LinkedHashMap<>();
+
+        public Builder text(String name) {
+            return field(name, name, FieldMask::toText);
+        }
+
+        public Builder integral(String name) {
+            return field(name, name, FieldMask::toLong);
+        }
+
+        public Builder decimal(String name) {
+            return field(name, name, FieldMask::toDouble);
+        }
+
+        /**
+         * @param convert maps a JSON value to the attribute value, or null if the value is not acceptable
+         */
+        public Builder field(String name, String attribute, Function<Object, Object> convert) {
+            fields.put(name, new Field(attribute, convert, true));
+            return this;
+        }
+
+        /**
+         * Like {@link #field} for an attribute that cannot be cleared with {@code null}.
+         */
+        public Builder required(String name, String attribute, Function<Object, Object> convert) {
+            fields.put(name, new Field(attribute, convert, false));
+            return this;
+        }
+
+        public FieldMask build() {
+            return new FieldMask(new LinkedHashMap<>(fields));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.crud;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * Builds one bulk {@code UPDATE} for the attributes named by a resolved
+ * {@link FieldMask}. Attribute names come from the mask whitelist, never
+ * from the request, so they are safe to splice into the JPQL.
+ */
+final class FieldMaskUpdates {
+
+    private FieldMaskUpdates() {
+    }
+
+    /**
+     * Writes {@code changes} to the row with the given id. Rows whose columns
+     * already hold the requested values are not written. When
+     * {@code versionAttribute} is given the version is incremented with the
+     * write.
+     *
+     * @return 1 if the row exists (changed or not), 0 if it does not
+     */
+    static int update(EntityManager entityManager, String entity, String idAttribute, String versionAttribute,
+            Object id, Map<String, Object> changes) {
+        return update(entityManager, entity, idAttribute, versionAttribute, id, changes, null);
+    }
+
+    /**
+     * As above, but with an {@code expectedVersion} the row is only written
+     * while its version still equals it, which makes the write a lock-free
+     * compare-and-set.
+     *
+     * @return 1 if the row exists (changed or not), 0 if it does not, -1 if
+     *         it exists with a version other than {@code expectedVersion}
+     */
+    static int update(EntityManager entityManager, String entity, String idAttribute, String versionAttribute,
+            Object id, Map<String, Object> changes, Long expectedVersion) {
+        if (!changes.isEmpty()) {
+            StringBuilder set = new StringBuilder();
+            StringBuilder changed = new StringBuilder();
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                String attribute = change.getKey();
+                if (set.length() > 0) {
+                    set.append(", ");
+                    changed.append(" or ");
+                }
+                set.append("e.").append(attribute).append(" = :").append(attribute);
+                if (change.getValue() == null) {
+                    changed.append("e.").append(attribute).append(" is not null");
+                } else {
+                    changed.append("e.").append(attribute).append(" <> :").append(attribute)
+                            .append(" or e.").append(attribute).append(" is null");
+                }
+            }
+            if (versionAttribute != null) {
+                set.append(", e.").append(versionAttribute).append(" = e.").append(versionAttribute).append(" + 1");
+            }
+            String expected = expectedVersion == null ? ""
+                    : " and e." + versionAttribute + " = :expectedVersion";
+            Query update = entityManager.createQuery("update " + entity + " e set " + set
+                    + " where e." + idAttribute + " = :pk" + expected + " and (" + changed + ")");
+            update.setParameter("pk", id);
+            if (expectedVersion != null) {
+                update.setParameter("expectedVersion", expectedVersion);
+            }
+            changes.forEach(update::setParameter);
+            if (update.executeUpdate() > 0) {
+                return 1;
+            }
+        }
+        // nothing written: there is no such row, it already matches the patch or its version moved on
+        if (expectedVersion != null) {
+            List<?> versions = entityManager
+                    .createQuery("select e." + versionAttribute + " from " + entity + " e where e." + idAttribute
+                            + " = :pk")
+                    .setParameter("pk", id)
+                    .getResultList();
+            if (versions.isEmpty()) {
+                return 0;
+            }
+            return expectedVersion.equals(((Number) versions.get(0)).longValue()) ? 1 : -1;
+        }
+        Number count = (Number) entityManager
+                .createQuery("select count(e) from " + entity + " e where e." + idAttribute + " = :pk")
+                .setParameter("pk", id)
+                .getSingleResult();
+        return count.intValue() > 0 ? 1 : 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.crud;
+
+/**
+ * 64-bit hash mixing shared by the id filters, entity tags and shard ring.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * The murmur3 {@code fmix64} finalizer: a bijection on longs in which
+     * every input bit affects every output bit.
+     */
+    public static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,158 @@
+package com.crud;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+
+/**
+ * Protobuf bodies for {@link User} and {@link Account}, and lists of either,
+ * through Jackson's protobuf backend.
+ * <p>
+ * The schema is generated from the classes (the same properties JSON
+ * writes) rather than compiled from a {@code .proto}, so the wire format
+ * cannot drift from the entities; {@link #schemaSource} renders it for
+ * clients to compile. Protobuf has no top-level repeated type, so a list is
+ * written as a message with one repeated {@code items} field.
+ */
+public class JacksonProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType PROTOBUF = MediaType.valueOf("application/x-protobuf");
+
+    private static final Map<String, Class<?>> MESSAGES = new LinkedHashMap<>();
+    static {
+        MESSAGES.put("user", User.class);
+        MESSAGES.put("account", Account.class);
+        MESSAGES.put("users", Users.class);
+        MESSAGES.put("accounts", Accounts.class);
+    }
+
+    private final ProtobufMapper mapper;
+    private final Map<Class<?>, ProtobufSchema> schemas = new ConcurrentHashMap<>();
+
+    public JacksonProtobufHttpMessageConverter(ProtobufMapper mapper) {
+        super(PROTOBUF);
+        this.mapper = mapper;
+    }
+
+    /**
+     * The {@code .proto} source of the named message (user, account, users
+     * or accounts), or null if there is no such message.
+     */
+    public String schemaSource(String name) {
+        Class<?> message = MESSAGES.get(name);
+        return message == null ? null : schema(message).getSource().toString();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == User.class || clazz == Account.class;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return messageType(type, contextClass) != null && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return messageType(declared(type, clazz), null) != null && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        Class<?> message = messageType(type, contextClass);
+        try {
+            Object value = mapper.readerFor(message).with(schema(message)).readValue(inputMessage.getBody());
+            return value instanceof Items ? ((Items<?>) value).items : value;
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf " + message.getSimpleName(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Class<?> message = messageType(declared(type, body.getClass()), null);
+        Object value = body;
+        if (message == Users.class || message == Accounts.class) {
+            Items<?> items = message == Users.class ? new Users() : new Accounts();
+            items.wrap(body);
+            value = items;
+        }
+        mapper.writerFor(message).with(schema(message)).writeValue(outputMessage.getBody(), value);
+    }
+
+    // a ResponseEntity<?> handler declares its body as a wildcard, then the value's class is all there is
+    private static Type declared(Type type, Class<?> valueClass) {
+        return type instanceof Class || type instanceof ParameterizedType ? type : valueClass;
+    }
+
+    // the message a body of this type is read or written as, null if it has none
+    private static Class<?> messageType(Type type, Class<?> contextClass) {
+        Type resolved = contextClass == null ? type : GenericTypeResolver.resolveType(type, contextClass);
+        if (resolved == User.class || resolved == Account.class) {
+            return (Class<?>) resolved;
+        }
+        if (resolved instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) resolved;
+            Type raw = parameterized.getRawType();
+            if (raw instanceof Class && Collection.class.isAssignableFrom((Class<?>) raw)
+                    && ((Class<?>) raw).isAssignableFrom(List.class)) {
+                Type element = parameterized.getActualTypeArguments()[0];
+                if (element == User.class) {
+                    return Users.class;
+                }
+                if (element == Account.class) {
+                    return Accounts.class;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ProtobufSchema schema(Class<?> message) {
+        return schemas.computeIfAbsent(message, type -> {
+            try {
+                return mapper.generateSchemaFor(type);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot generate a protobuf schema for " + type.getName(), e);
+            }
+        });
+    }
+
+    abstract static class Items<T> {
+        public List<T> items;
+
+        @SuppressWarnings("unchecked")
+        void wrap(Object list) {
+            this.items = (List<T>) list;
+        }
+    }
+
+    public static final class Users extends Items<User> {
+    }
+
+    public static final class Accounts extends Items<Account> {
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.crud;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.crud.error.InvalidCursorException;
+
+/**
+ * Opaque continuation token for keyset pagination. The token is the last key
+ * of the previous page, encoded so clients do not depend on its format. Scans
+ * ordered by a text column and then the key carry both.
+ */
+public final class KeysetCursor {
+
+    private static final byte VERSION = 1;
+
+    private static final byte SORTED_VERSION = 2;
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(long lastKey) {
+        ByteBuffer buffer = ByteBuffer.allocate(9).put(VERSION).putLong(lastKey);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static long decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(token);
+        }
+        if (bytes.length != 9 || bytes[0] != VERSION) {
+            throw new InvalidCursorException(token);
+        }
+        return ByteBuffer.wrap(bytes, 1, 8).getLong();
+    }
+
+    public static String encode(String lastSortKey, long lastKey) {
+        byte[] sortKey = lastSortKey.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(9 + sortKey.length).put(SORTED_VERSION).putLong(lastKey).put(sortKey);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static Position decodeSorted(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(token);
+        }
+        if (bytes.length < 9 || bytes[0] != SORTED_VERSION) {
+            throw new InvalidCursorException(token);
+        }
+        return new Position(new String(Arrays.copyOfRange(bytes, 9, bytes.length), StandardCharsets.UTF_8),
+                ByteBuffer.wrap(bytes, 1, 8).getLong());
+    }
+
+    // where a scan ordered by (sortKey, key) stopped
+    public static final class Position {
+
+        private final String sortKey;
+        private final long key;
+
+        public Position(String sortKey, long key) {
+            this.sortKey = sortKey;
+            this.key = key;
+        }
+
+        public String getSortKey() {
+            return sortKey;
+        }
+
+        public long getKey() {
+            return key;
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.crud;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset scan. {@code next} is null on the last page.
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String next;
+
+    public KeysetPage(List<T> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    /**
+     * Builds a page from a query that asked for {@code size + 1} rows; the
+     * extra row only tells us whether another page exists.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, Long> keyOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(items, KeysetCursor.encode(keyOf.apply(items.get(size - 1))));
+    }
+
+    /**
+     * Same for a scan ordered by a text column and then the key.
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, String> sortKeyOf,
+            Function<T, Long> keyOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, size);
+        T last = items.get(size - 1);
+        return new KeysetPage<>(items, KeysetCursor.encode(sortKeyOf.apply(last), keyOf.apply(last)));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+}
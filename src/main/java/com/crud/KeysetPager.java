@@ -0,0 +1,82 @@
+package com.crud;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keyset (cursor) pagination over a monotonically increasing Long key, shared
+ * by the user and account controllers.
+ */
+@Component
+public class KeysetPager {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${crud.page.default-size:100}")
+    private int defaultSize;
+
+    @Value("${crud.page.max-size:1000}")
+    private int maxSize;
+
+    public int pageSize(Integer requested) {
+        if (requested == null || requested < 1) {
+            return defaultSize;
+        }
+        return Math.min(requested, maxSize);
+    }
+
+    public <T> KeysetPage<T> page(String after, Integer size, BiFunction<Long, Pageable, List<T>> fetcher,
+            Function<T, Long> keyOf) {
+        int pageSize = pageSize(size);
+        long from = after == null ? Long.MIN_VALUE : KeysetCursor.decode(after);
+        return KeysetPage.of(fetcher.apply(from, PageRequest.of(0, pageSize + 1)), pageSize, keyOf);
+    }
+
+    /**
+     * Writes every row as one JSON array, reading a page at a time so memory
+     * stays bounded by the page size rather than the table size.
+     */
+    public <T> StreamingResponseBody stream(Integer size, BiFunction<Long, Pageable, List<T>> fetcher,
+            Function<T, Long> keyOf) {
+        Pageable page = PageRequest.of(0, pageSize(size));
+        return out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.writeStartArray();
+            long from = Long.MIN_VALUE;
+            List<T> rows;
+            do {
+                rows = fetcher.apply(from, page);
+                for (T row : rows) {
+                    generator.writeObject(row);
+                }
+                generator.flush();
+                if (!rows.isEmpty()) {
+                    from = keyOf.apply(rows.get(rows.size() - 1));
+                }
+                // drop the page from the persistence context before reading the next one
+                entityManager.clear();
+            } while (rows.size() == page.getPageSize());
+            generator.writeEndArray();
+            generator.close();
+        };
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.crud;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Negative-lookup filters over the existing user ids and account numbers,
+ * enabled with {@code crud.id-filter.enabled=true}. A {@code findOne} for a
+ * key the filter has never seen is a definite miss and answers 404 without a
+ * query.
+ * <p>
+ * Each filter is built in the background from a streamed scan of the keys;
+ * until it is ready every lookup goes to the database. Every handler that
+ * creates rows must {@link IdFilter#add} the keys after its write has
+ * committed, and keys created while a build is scanning are added to both
+ * the old and the new filter, so the filter never misses an existing row.
+ * Deleted keys stay in the filter and only cost a query; once deletes reach
+ * {@code crud.id-filter.rebuild-stale-fraction} of the keys, or more keys
+ * than the filter was sized for have been added, it is rebuilt.
+ * <p>
+ * Only writes through this instance are seen, so it must stay off when other
+ * instances or processes create rows in the same database.
+ */
+@Component
+public class KnownIds {
+
+    private static final Logger log = LoggerFactory.getLogger(KnownIds.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${crud.id-filter.enabled:false}")
+    private boolean enabled;
+
+    @Value("${crud.id-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${crud.id-filter.min-capacity:100000}")
+    private long minCapacity;
+
+    @Value("${crud.id-filter.rebuild-stale-fraction:0.2}")
+    private double rebuildStaleFraction;
+
+    private final IdFilter users = new IdFilter("users");
+    private final IdFilter accounts = new IdFilter("accounts");
+    private ExecutorService builder;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        builder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "id-filter-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        users.configure(userRepository::count, userRepository::streamAllUserIds);
+        accounts.configure(accountRepository::count, accountRepository::streamAllAccountNumbers);
+        users.scheduleBuild();
+        accounts.scheduleBuild();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (builder != null) {
+            builder.shutdownNow();
+        }
+    }
+
+    public IdFilter users() {
+        return users;
+    }
+
+    public IdFilter accounts() {
+        return accounts;
+    }
+
+    // a saved user may carry new accounts
+    public void userSaved(User user) {
+        users.add(user.getUserId());
+        if (user.getAccount() != null) {
+            for (Account account : user.getAccount()) {
+                accounts.add(account.getAccountNumber());
+            }
+        }
+    }
+
+    public void usersSaved(List<User> saved) {
+        for (User user : saved) {
+            userSaved(user);
+        }
+    }
+
+    public final class IdFilter {
+
+        private final String name;
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong falsePositives = new AtomicLong();
+        private final AtomicLong staleDeletes = new AtomicLong();
+        private final AtomicLong builds = new AtomicLong();
+        private final AtomicBoolean buildScheduled = new AtomicBoolean();
+        private LongSupplier count;
+        private Supplier<Stream<Long>> scan;
+        private volatile BloomFilter current;
+        private volatile BloomFilter building;
+
+        IdFilter(String name) {
+            this.name = name;
+        }
+
+        void configure(LongSupplier count, Supplier<Stream<Long>> scan) {
+            this.count = count;
+            this.scan = scan;
+        }
+
+        /**
+         * False only if the key was never added; true while the filter is
+         * still being built or when disabled.
+         */
+        public boolean mightContain(Long key) {
+            BloomFilter filter = current;
+            if (filter == null || key == null || filter.mightContain(key)) {
+                return true;
+            }
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        public void add(Long key) {
+            if (key != null) {
+                add(key.longValue());
+            }
+        }
+
+        public void addAll(long[] keys, int count) {
+            for (int i = 0; i < count; i++) {
+                add(keys[i]);
+            }
+        }
+
+        private void add(long key) {
+            BloomFilter next = building;
+            if (next != null) {
+                next.add(key);
+            }
+            BloomFilter filter = current;
+            if (filter != null) {
+                filter.add(key);
+                if (filter.keys() > filter.capacity()) {
+                    scheduleBuild();
+                }
+            }
+        }
+
+        public void removed() {
+            BloomFilter filter = current;
+            if (filter != null && staleDeletes.incrementAndGet() > filter.keys() * rebuildStaleFraction) {
+                scheduleBuild();
+            }
+        }
+
+        // the filter let a key through that the database did not have
+        public void falsePositive() {
+            if (current != null) {
+                falsePositives.incrementAndGet();
+            }
+        }
+
+        void scheduleBuild() {
+            if (builder != null && buildScheduled.compareAndSet(false, true)) {
+                builder.execute(this::build);
+            }
+        }
+
+        private void build() {
+            try {
+                long rows = count.getAsLong();
+                BloomFilter next = new BloomFilter(Math.max(minCapacity, rows * 2), falsePositiveRate);
+                building = next;
+                staleDeletes.set(0);
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    try (Stream<Long> keys = scan.get()) {
+                        keys.forEach(next::add);
+                    }
+                    return null;
+                });
+                current = next;
+                builds.incrementAndGet();
+                log.info("{} id filter built: {} keys, {} bits, {} hashes, expected false-positive rate {}", name,
+                        next.keys(), next.bits(), next.hashes(), next.expectedFalsePositiveRate());
+            } catch (RuntimeException e) {
+                log.error("{} id filter build failed, lookups keep using the previous filter", name, e);
+            } finally {
+                building = null;
+                buildScheduled.set(false);
+            }
+        }
+
+        public Map<String, Object> stats() {
+            BloomFilter filter = current;
+            long misses = rejected.get() + falsePositives.get();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("ready", filter != null);
+            result.put("keys", filter == null ? 0 : filter.keys());
+            result.put("capacity", filter == null ? 0 : filter.capacity());
+            result.put("bits", filter == null ? 0 : filter.bits());
+            result.put("hashes", filter == null ? 0 : filter.hashes());
+            result.put("configuredFalsePositiveRate", falsePositiveRate);
+            result.put("expectedFalsePositiveRate", filter == null ? 0.0 : filter.expectedFalsePositiveRate());
+            result.put("rejectedCount", rejected.get());
+            result.put("falsePositiveCount", falsePositives.get());
+            result.put("observedFalsePositiveRate", misses == 0 ? 0.0 : (double) falsePositives.get() / misses);
+            result.put("staleDeletes", staleDeletes.get());
+            result.put("builds", builds.get());
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.crud;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Repository timing for the Prometheus scrape at {@code /actuator/prometheus}.
+ * <p>
+ * Handler latency ({@code http.server.requests}) and connection acquire wait
+ * ({@code hikaricp.connections.acquire}) come from Spring Boot's own
+ * instrumentation; their histograms are switched on in application.properties.
+ * Repository calls are timed by adding a {@link RepositoryTimingInterceptor} to
+ * the front of each Spring Data proxy's advice chain, see
+ * {@link RepositoryAdviceRegistrar}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    static BeanPostProcessor repositoryTimers(ObjectProvider<MeterRegistry> registry) {
+        return new RepositoryAdviceRegistrar(Repository.class,
+                beanName -> new RepositoryTimingInterceptor(beanName, registry));
+    }
+
+}
@@ -3,7 +3,12 @@ package com.crud;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+// the R2DBC stack on the classpath belongs to ReactiveCrudApplication, keep it out of this one
+@SpringBootApplication(excludeName = {
+		"org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration",
+		"org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration" })
 public class MicroserviceCrudApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,52 @@
+package com.crud;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Conversions between decimal amounts as they appear in JSON and the
+ * fixed-point minor units (hundredths) balances are stored and computed in.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has more than two decimals or does not fit a long
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE).unscaledValue().longValueExact();
+    }
+
+    public static long toMinor(Number amount) {
+        if (amount instanceof BigDecimal) {
+            return toMinor((BigDecimal) amount);
+        }
+        if (amount instanceof Long || amount instanceof Integer || amount instanceof Short || amount instanceof BigInteger) {
+            return toMinor(new BigDecimal(amount.toString()));
+        }
+        // Double.toString gives the shortest decimal that round-trips, so 0.1 stays 0.1
+        return toMinor(BigDecimal.valueOf(amount.doubleValue()));
+    }
+
+    public static double toMajor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE).doubleValue();
+    }
+
+    /**
+     * {@link FieldMask} converter: minor units, or null if the value is not an amount.
+     */
+    static Object toMinorOrNull(Object value) {
+        if (!(value instanceof Number)) {
+            return null;
+        }
+        try {
+            return toMinor((Number) value);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+}
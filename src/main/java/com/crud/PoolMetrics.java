@@ -0,0 +1,51 @@
+package com.crud;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Meters a Hikari pool ({@code hikaricp.connections.*}, tagged with the pool
+ * name) the way Spring Boot does for the application data source. Boot only
+ * finds the pools it can unwrap from a {@code DataSource} bean, so the
+ * replica and shard pools, which are not beans, are registered here when
+ * they are built, and so is the primary before it is wrapped in a routing
+ * data source. A pool can only be given a registry before it has started.
+ */
+public final class PoolMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolMetrics.class);
+
+    private PoolMetrics() {
+    }
+
+    public static void register(DataSource dataSource, ObjectProvider<MeterRegistry> registry) {
+        MeterRegistry meterRegistry = registry.getIfAvailable();
+        HikariDataSource pool = hikari(dataSource);
+        if (meterRegistry == null || pool == null || pool.getMetricRegistry() != null
+                || pool.getMetricsTrackerFactory() != null) {
+            return;
+        }
+        try {
+            pool.setMetricRegistry(meterRegistry);
+        } catch (IllegalStateException e) {
+            log.warn("pool {} started before its metrics could be registered", pool.getPoolName());
+        }
+    }
+
+    private static HikariDataSource hikari(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
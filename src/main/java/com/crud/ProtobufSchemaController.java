@@ -0,0 +1,29 @@
+package com.crud;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+
+@RestController
+public class ProtobufSchemaController {
+
+    // generated the same way as the converter's, from the entity classes
+    private final JacksonProtobufHttpMessageConverter schemas =
+            new JacksonProtobufHttpMessageConverter(new ProtobufMapper());
+
+    // .proto source of the application/x-protobuf messages: user, account, users, accounts
+    @GetMapping(value = "/protobuf/{message}.proto", produces = MediaType.TEXT_PLAIN_VALUE)
+    String schema(@PathVariable String message) {
+        String source = schemas.schemaSource(message);
+        if (source == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No protobuf message : " + message);
+        }
+        return source;
+    }
+
+}
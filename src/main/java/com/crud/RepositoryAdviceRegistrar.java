@@ -0,0 +1,41 @@
+package com.crud;
+
+import java.util.function.Function;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Puts an advice at the front of the advice chain of each Spring Data
+ * repository proxy of a given type, instead of proxying the proxy. Beans
+ * replaced with {@code @MockBean} are not proxies and are left alone.
+ * Register it from a static {@code @Bean} method, so it is created before
+ * the repositories.
+ */
+public class RepositoryAdviceRegistrar implements BeanPostProcessor {
+
+    private final Class<?> repositoryType;
+
+    private final Function<String, ? extends Advice> adviceForBean;
+
+    /**
+     * @param adviceForBean the advice for a repository, given its bean name
+     */
+    public RepositoryAdviceRegistrar(Class<?> repositoryType, Function<String, ? extends Advice> adviceForBean) {
+        this.repositoryType = repositoryType;
+        this.adviceForBean = adviceForBean;
+    }
+
+    public RepositoryAdviceRegistrar(Class<?> repositoryType, Advice advice) {
+        this(repositoryType, beanName -> advice);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (repositoryType.isInstance(bean) && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvice(0, adviceForBean.apply(beanName));
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,67 @@
+package com.crud;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times each repository method as {@code crud.repository}, tagged with the
+ * repository bean, the method and the exception it threw ({@code none} when it
+ * returned).
+ * <p>
+ * The success timer is resolved once per method and cached, so the steady
+ * state cost of a call is one map read and two {@code nanoTime} calls.
+ */
+public class RepositoryTimingInterceptor implements MethodInterceptor {
+
+    static final String METRIC = "crud.repository";
+
+    private final String repository;
+    private final ObjectProvider<MeterRegistry> registry;
+    private final ConcurrentMap<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public RepositoryTimingInterceptor(String repository, ObjectProvider<MeterRegistry> registry) {
+        this.repository = repository;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            Timer timer = timers.get(method);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(method, m -> timer(m, "none"));
+            }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(method, e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(Method method, String exception) {
+        return Timer.builder(METRIC)
+                .description("Repository method latency")
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(registry.getObject());
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.crud;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Pre-encoded JSON bodies, plain and gzipped, for {@code GET /users/{userId}}
+ * and {@code GET /accounts/{accountNumber}}.
+ * <p>
+ * An entry is keyed by entity and id and remembers the entity tag it was
+ * encoded for. Every representation is sent with its own tag
+ * ({@link #responseTag}) and {@code Vary: Accept, Accept-Encoding}, so no
+ * two representations share a strong validator. A hit is only served while that tag equals the tag of the
+ * entity the handler just looked up, so a stale entry is re-encoded rather
+ * than returned. Write handlers still {@link #invalidate} their ids so dead
+ * bytes do not wait for eviction. The cache is bounded by the total bytes
+ * held and can keep them in direct buffers outside the Java heap. Requests
+ * that prefer another media type (CBOR, Smile, Protobuf) bypass it.
+ */
+@Component
+public class ResponseBodyCache {
+
+    public static final char USER = 'u';
+    public static final char ACCOUNT = 'a';
+
+    // key, entry and map node, roughly
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    // the media types an entity is written as, in server preference, with the suffix of their tags
+    private static final Map<MediaType, String> REPRESENTATIONS = new LinkedHashMap<>();
+    static {
+        REPRESENTATIONS.put(MediaType.APPLICATION_JSON, null);
+        REPRESENTATIONS.put(CBOR, "cbor");
+        REPRESENTATIONS.put(SMILE, "smile");
+        REPRESENTATIONS.put(JacksonProtobufHttpMessageConverter.PROTOBUF, "protobuf");
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${crud.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crud.response-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${crud.response-cache.off-heap:false}")
+    private boolean offHeap;
+
+    private Cache<Key, CachedBody> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, CachedBody body) -> body.getLength() + ENTRY_OVERHEAD)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "responseBodies");
+    }
+
+    /**
+     * A 200 response for {@code entity}: its cached encoding when the client
+     * takes JSON, otherwise the entity itself in the media type it prefers.
+     */
+    public ResponseEntity<?> respond(char type, Long id, String etag, Object entity, String accept,
+            String acceptEncoding) {
+        String responseTag = responseTag(etag, accept, acceptEncoding);
+        MediaType representation = representation(accept);
+        if (!enabled || !MediaType.APPLICATION_JSON.equals(representation)) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(responseTag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+            // fixed here so the body is written in the media type its tag names; none is left to a 406
+            if (representation != null) {
+                response.contentType(representation);
+            }
+            return response.body(entity);
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        Key key = new Key(type, id, gzip);
+        CachedBody body = cache.getIfPresent(key);
+        if (body == null || !body.getEtag().equals(etag)) {
+            body = encode(entity, etag, gzip);
+            cache.put(key, body);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(responseTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (body.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, body.getContentEncoding());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * The tag {@link #respond} sends for an entity tagged {@code etag}: that
+     * tag for identity JSON, otherwise the tag of the representation it will
+     * send (gzipped JSON, CBOR, Smile or Protobuf).
+     */
+    public String responseTag(String etag, String accept, String acceptEncoding) {
+        MediaType representation = representation(accept);
+        if (representation == null) {
+            return etag;
+        }
+        if (MediaType.APPLICATION_JSON.equals(representation)) {
+            return enabled && acceptsGzip(acceptEncoding) ? EntityTags.gzip(etag) : etag;
+        }
+        return EntityTags.variant(etag, REPRESENTATIONS.get(representation));
+    }
+
+    /**
+     * The 304 for a revalidation that matched {@code responseTag}, with the
+     * headers of the 200 it stands for.
+     */
+    public ResponseEntity<?> notModified(String responseTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(responseTag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    public void invalidate(char type, Long id) {
+        if (id != null) {
+            cache.invalidate(new Key(type, id, false));
+            cache.invalidate(new Key(type, id, true));
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private CachedBody encode(Object entity, String etag, boolean gzip) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(entity);
+            if (!gzip) {
+                return new CachedBody(etag, null, json, offHeap);
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2 + 32);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(json);
+            }
+            return new CachedBody(etag, "gzip", compressed.toByteArray(), offHeap);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode " + entity.getClass().getSimpleName(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the client's first choice (by quality, then specificity) that an entity is written as, JSON for a
+    // wildcard; null if none is acceptable
+    static MediaType representation(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> types;
+        try {
+            types = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(types);
+        for (MediaType type : types) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType representation : REPRESENTATIONS.keySet()) {
+                if (type.includes(representation)) {
+                    return representation;
+                }
+            }
+        }
+        return null;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static final class Key {
+
+        private final char type;
+        private final long id;
+        private final boolean gzip;
+
+        Key(char type, long id, boolean gzip) {
+            this.type = type;
+            this.id = id;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && id == other.id && gzip == other.gzip;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + type * 2 + (gzip ? 1 : 0);
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.crud;
+
+import java.math.BigDecimal;
+
+/**
+ * Body of {@code POST /accounts/transfer}. The amount is read as a
+ * {@link BigDecimal} so it reaches {@link Money} without a double rounding.
+ */
+public class TransferRequest {
+
+    private Long from;
+    private Long to;
+    private BigDecimal amount;
+
+    public Long getFrom() {
+        return from;
+    }
+
+    public void setFrom(Long from) {
+        this.from = from;
+    }
+
+    public Long getTo() {
+        return to;
+    }
+
+    public void setTo(Long to) {
+        this.to = to;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,213 @@
+package com.crud;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.error.AccountNotFoundException;
+import com.crud.error.InsufficientFundsException;
+import com.crud.error.InvalidTransferException;
+import com.crud.shard.AccountShards;
+import com.crud.shard.TransferOutbox;
+
+/**
+ * Moves funds between two accounts in one transaction.
+ * <p>
+ * Each side is a single conditional UPDATE ({@code balance_minor} arithmetic
+ * and a version bump in the database), so no balance is read and written
+ * back and concurrent transfers cannot lose each other's updates. The two
+ * rows are always updated in ascending account number order, so two
+ * transfers over the same pair lock the rows in the same order and cannot
+ * deadlock. Lock timeouts, deadlocks detected elsewhere and optimistic
+ * lock failures are retried with capped, jittered exponential backoff.
+ * <p>
+ * With sharded accounts a transfer between two accounts on the same shard
+ * is the same single transaction on that shard. Across shards it is two:
+ * the debit commits first, together with a {@link TransferOutbox} record of
+ * the credit it owes, and the credit follows. A credit to an account that
+ * does not exist refunds the source instead. Until the credit commits the
+ * amount is in neither account; a credit that did not happen because of a
+ * crash or an outage is replayed from the outbox at the next startup.
+ */
+@Service
+public class TransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferService.class);
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private AccountShards shards;
+
+    @Autowired(required = false)
+    private TransferOutbox outbox;
+
+    @Value("${crud.transfer.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${crud.transfer.backoff-initial-ms:5}")
+    private long backoffInitialMs;
+
+    @Value("${crud.transfer.backoff-max-ms:200}")
+    private long backoffMaxMs;
+
+    public void transfer(Long from, Long to, BigDecimal amount) {
+        long amountMinor = validate(from, to, amount);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        if (shards != null) {
+            int fromShard = shards.locate(from);
+            int toShard = shards.locate(to);
+            if (fromShard != toShard) {
+                transferAcrossShards(tx, from, fromShard, to, amountMinor);
+                return;
+            }
+            shards.on(fromShard, () -> withRetries(() -> tx.execute(status -> transferInOne(from, to, amountMinor))));
+            return;
+        }
+        withRetries(() -> tx.execute(status -> transferInOne(from, to, amountMinor)));
+    }
+
+    private Object transferInOne(Long from, Long to, long amountMinor) {
+        if (from < to) {
+            debit(from, amountMinor);
+            credit(to, amountMinor);
+        } else {
+            credit(to, amountMinor);
+            debit(from, amountMinor);
+        }
+        return null;
+    }
+
+    private void transferAcrossShards(TransactionTemplate tx, Long from, int fromShard, Long to, long amountMinor) {
+        String transferId = UUID.randomUUID().toString();
+        shards.on(fromShard, () -> withRetries(() -> tx.execute(status -> {
+            debit(from, amountMinor);
+            outbox.record(transferId, from, to, amountMinor);
+            return null;
+        })));
+        deliver(tx, transferId, fromShard, from, to, amountMinor);
+    }
+
+    // applies the credit an outbox record on fromShard owes, once however often it is called
+    private void deliver(TransactionTemplate tx, String transferId, int fromShard, Long from, Long to,
+            long amountMinor) {
+        try {
+            shards.on(shards.locate(to), () -> withRetries(() -> tx.execute(status -> {
+                outbox.markApplied(transferId);
+                credit(to, amountMinor);
+                return null;
+            })));
+        } catch (DuplicateKeyException e) {
+            // credited before, only the record was left
+        } catch (AccountNotFoundException e) {
+            // the refund goes with the record, so it is made once too
+            shards.on(fromShard, () -> withRetries(() -> tx.execute(status -> {
+                if (outbox.remove(transferId)) {
+                    credit(from, amountMinor);
+                }
+                return null;
+            })));
+            throw e;
+        }
+        shards.on(fromShard, () -> outbox.remove(transferId));
+    }
+
+    /**
+     * Replays the credits of cross-shard transfers whose debit committed but
+     * whose credit did not, e.g. because the process stopped in between.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void completePendingTransfers() {
+        if (outbox == null) {
+            return;
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int shard = 0; shard < shards.physicalShards(); shard++) {
+            for (TransferOutbox.Pending pending : outbox.pending(shard)) {
+                try {
+                    deliver(tx, pending.transferId, shard, pending.from, pending.to, pending.amountMinor);
+                    log.info("completed transfer {} of {} minor units from {} to {}", pending.transferId,
+                            pending.amountMinor, pending.from, pending.to);
+                } catch (AccountNotFoundException e) {
+                    log.warn("transfer {} refunded to {}: {}", pending.transferId, pending.from, e.getMessage());
+                } catch (RuntimeException e) {
+                    log.error("transfer {} still pending, retried at the next start", pending.transferId, e);
+                }
+            }
+        }
+    }
+
+    private <T> T withRetries(Supplier<T> work) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return work.get();
+            } catch (ConcurrencyFailureException | TransientDataAccessException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void debit(Long accountNumber, long amountMinor) {
+        if (repository.debit(accountNumber, amountMinor) == 0) {
+            if (!repository.existsById(accountNumber)) {
+                throw new AccountNotFoundException(accountNumber);
+            }
+            throw new InsufficientFundsException(accountNumber);
+        }
+    }
+
+    private void credit(Long accountNumber, long amountMinor) {
+        if (repository.credit(accountNumber, amountMinor) == 0) {
+            throw new AccountNotFoundException(accountNumber);
+        }
+    }
+
+    private static long validate(Long from, Long to, BigDecimal amount) {
+        if (from == null || to == null || amount == null) {
+            throw new InvalidTransferException("from, to and amount are required");
+        }
+        if (from.equals(to)) {
+            throw new InvalidTransferException("from and to are the same account");
+        }
+        if (amount.signum() <= 0) {
+            throw new InvalidTransferException("amount must be positive");
+        }
+        try {
+            return Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidTransferException("amount has more than " + Money.SCALE + " decimals");
+        }
+    }
+
+    // "full jitter": sleep a random time up to the capped exponential delay
+    private void backoff(int attempt) {
+        long ceiling = Math.min(backoffMaxMs, backoffInitialMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Interrupted while retrying transfer", e);
+        }
+    }
+}
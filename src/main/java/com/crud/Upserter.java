@@ -0,0 +1,116 @@
+package com.crud;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-statement insert-or-update, written in the dialect of the connected
+ * database: {@code MERGE} on H2, {@code ON CONFLICT} on PostgreSQL and
+ * {@code ON DUPLICATE KEY} on MySQL/MariaDB. A version column, when given,
+ * starts at 0 on insert and is incremented on update.
+ */
+@Component
+public class Upserter {
+
+    enum Dialect {
+        H2 {
+            @Override
+            String sql(String table, String key, List<String> columns, String version) {
+                if (version == null) {
+                    return "merge into " + table + " (" + String.join(", ", columns) + ") key (" + key
+                            + ") values (" + placeholders(columns) + ")";
+                }
+                return "merge into " + table + " t using (select "
+                        + columns.stream().map(c -> "? " + c).collect(Collectors.joining(", ")) + ") s"
+                        + " on (t." + key + " = s." + key + ")"
+                        + " when matched then update set " + updated(columns, key).map(c -> "t." + c + " = s." + c)
+                                .collect(Collectors.joining(", ")) + ", t." + version + " = t." + version + " + 1"
+                        + " when not matched then insert (" + String.join(", ", columns) + ", " + version + ")"
+                        + " values (" + columns.stream().map(c -> "s." + c).collect(Collectors.joining(", ")) + ", 0)";
+            }
+        },
+        POSTGRESQL {
+            @Override
+            String sql(String table, String key, List<String> columns, String version) {
+                return insert(table, columns, version) + " on conflict (" + key + ") do update set "
+                        + updated(columns, key).map(c -> c + " = excluded." + c).collect(Collectors.joining(", "))
+                        + (version == null ? "" : ", " + version + " = " + table + "." + version + " + 1");
+            }
+        },
+        MYSQL {
+            @Override
+            String sql(String table, String key, List<String> columns, String version) {
+                return insert(table, columns, version) + " on duplicate key update "
+                        + updated(columns, key).map(c -> c + " = values(" + c + ")").collect(Collectors.joining(", "))
+                        + (version == null ? "" : ", " + version + " = " + version + " + 1");
+            }
+        };
+
+        abstract String sql(String table, String key, List<String> columns, String version);
+
+        static Dialect of(String productName) {
+            String name = productName.toLowerCase(Locale.ROOT);
+            if (name.contains("h2")) {
+                return H2;
+            }
+            if (name.contains("postgres")) {
+                return POSTGRESQL;
+            }
+            if (name.contains("mysql") || name.contains("mariadb")) {
+                return MYSQL;
+            }
+            throw new IllegalStateException("No upsert support for " + productName);
+        }
+
+        private static String insert(String table, List<String> columns, String version) {
+            return "insert into " + table + " (" + String.join(", ", columns) + (version == null ? "" : ", " + version)
+                    + ") values (" + placeholders(columns) + (version == null ? "" : ", 0") + ")";
+        }
+
+        private static Stream<String> updated(List<String> columns, String key) {
+            return columns.stream().filter(c -> !c.equals(key));
+        }
+
+        private static String placeholders(List<String> columns) {
+            return columns.stream().map(c -> "?").collect(Collectors.joining(", "));
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Dialect dialect;
+
+    /**
+     * @param columns all columns to write, including {@code key}; {@code args} follow the same order
+     * @param version version column to maintain, or null
+     */
+    public void upsert(String table, String key, List<String> columns, String version, Object... args) {
+        jdbcTemplate.update(dialect().sql(table, key, columns, version), args);
+    }
+
+    /**
+     * Upserts many rows of one table as a single JDBC batch.
+     */
+    public void upsertAll(String table, String key, List<String> columns, String version, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(dialect().sql(table, key, columns, version), rows);
+        }
+    }
+
+    private Dialect dialect() {
+        Dialect current = dialect;
+        if (current == null) {
+            current = dialect = Dialect.of(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return current;
+    }
+}
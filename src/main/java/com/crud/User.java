@@ -10,11 +10,21 @@ import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "user")
+// secondary lookups: exact email and phone, name prefix; user_id last so pages come in key order off the index
+@Table(name = "user", indexes = {
+        @Index(name = "user_email", columnList = "email, user_id"),
+        @Index(name = "user_phone_number", columnList = "phoneNumber, user_id"),
+        @Index(name = "user_last_name", columnList = "lastName, user_id"),
+        @Index(name = "user_first_name", columnList = "firstName, user_id")
+})
 public class User {
 
 	@Id
@@ -26,6 +36,8 @@ public class User {
     private Long phoneNumber;
     private String addressLine1;
     private String addressLine2;
+	@Version
+	private long version;
     @OneToMany(mappedBy = "user", cascade = {
             CascadeType.ALL
         })
@@ -100,5 +112,9 @@ public class User {
 	public void setAddressLine2(String addressLine2) {
 		this.addressLine2 = addressLine2;
 	}
+	@JsonIgnore
+	public long getVersion() {
+		return version;
+	}
     
 }
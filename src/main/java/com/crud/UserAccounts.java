@@ -0,0 +1,102 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.crud.shard.AccountShards;
+
+/**
+ * The accounts embedded in user representations.
+ * <p>
+ * Unsharded they are the user's own {@code account} collection. With
+ * sharded accounts that collection only sees the primary, so the users about
+ * to be returned get their accounts gathered from every shard through
+ * {@link AccountRepository}, and a deleted user's accounts are deleted on
+ * every shard.
+ */
+@Component
+public class UserAccounts {
+
+    // bound parameters per owner query
+    private static final int CHUNK = 1000;
+
+    @Autowired
+    private AccountRepository accounts;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired(required = false)
+    private AccountShards shards;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Replaces the account lists of {@code found} with the accounts from every
+     * shard. The users are detached first, so the replaced lists are never
+     * flushed.
+     *
+     * @return {@code found}
+     */
+    public <T extends List<User>> T attach(T found) {
+        if (shards == null || found.isEmpty()) {
+            return found;
+        }
+        Map<Long, List<Account>> byOwner = new HashMap<>();
+        List<Long> ids = new ArrayList<>(found.size());
+        for (User user : found) {
+            ids.add(user.getUserId());
+        }
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            for (Object[] row : accounts.findOwnedBy(ids.subList(from, Math.min(ids.size(), from + CHUNK)))) {
+                byOwner.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Account) row[1]);
+            }
+        }
+        for (User user : found) {
+            if (entityManager.contains(user)) {
+                entityManager.detach(user);
+            }
+            user.setAccount(byOwner.getOrDefault(user.getUserId(), new ArrayList<>()));
+        }
+        return found;
+    }
+
+    public List<UserSummary> summaries() {
+        if (shards == null) {
+            return UserSummary.fromRows(users.findAllWithAccountRows());
+        }
+        try (Stream<Object[]> accountRows = accounts.streamOwnedOrderByUserId()) {
+            return UserSummary.join(users.findAllUserRows(), accountRows);
+        }
+    }
+
+    /**
+     * {@code [accountNumber, version]} of the accounts the user's
+     * representation embeds, on every shard when sharded, for
+     * {@link EntityTags#of(long, List)}.
+     */
+    public List<Object[]> versions(Long userId) {
+        return accounts.findVersionsOwnedBy(userId);
+    }
+
+    /**
+     * Deletes the user's accounts on every shard; unsharded, deleting the
+     * user cascades to them.
+     */
+    public void deleteOwnedBy(Long userId) {
+        if (shards != null) {
+            accounts.deleteOwnedBy(userId);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.crud;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.crud.replica.ReplicaContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Read-through cache in front of {@link UserRepository#findById}.
+ * <p>
+ * Caffeine bounds it by size (W-TinyLFU admission) and age. Concurrent misses
+ * for the same id share one load. Every write handler must call
+ * {@link #invalidate} after its write has committed. If a load started before
+ * the commit, the invalidation waits for it and then removes the stale entry.
+ * Misses are not cached. The cached user carries its accounts, so account
+ * writes evict their owners through {@link AccountOwners}. Loads read the primary even with read replicas
+ * enabled: an entry filled from a lagging replica right after an
+ * invalidation would serve the old row until it expires.
+ */
+@Component
+public class UserCache {
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private UserAccounts userAccounts;
+
+    @Value("${crud.cache.users.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${crud.cache.users.expire-after-write-seconds:300}")
+    private long expireAfterWriteSeconds;
+
+    private Cache<Long, User> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<User> findById(Long userId) {
+        return Optional.ofNullable(cache.get(userId, this::load));
+    }
+
+    private User load(Long userId) {
+        boolean wasPinned = ReplicaContext.pinPrimary();
+        try {
+            return repository.findById(userId)
+                    .map(user -> {
+                        // the cached instance outlives the session, load what serialisation will touch
+                        Hibernate.initialize(user.getAccount());
+                        return userAccounts.attach(Collections.singletonList(user)).get(0);
+                    })
+                    .orElse(null);
+        } finally {
+            ReplicaContext.restore(wasPinned);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return result;
+    }
+
+}
@@ -1,12 +1,20 @@
 package com.crud;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.util.StringUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -14,22 +22,132 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.crud.User;
 import com.crud.UserRepository;
+import com.crud.error.InvalidSearchException;
+import com.crud.error.PreconditionFailedException;
 import com.crud.error.UserNotFoundException;
 import com.crud.error.UserUnSupportedFieldPatchException;
 @RestController
 public class UserController {
+
+    // shared with the reactive controllers
+    public static final FieldMask PATCHABLE = FieldMask.builder()
+            .text("firstName")
+            .text("lastName")
+            .text("email")
+            .integral("phoneNumber")
+            .text("addressLine1")
+            .text("addressLine2")
+            .build();
+
 	@Autowired
     private UserRepository repository;
 
+	@Autowired
+    private KeysetPager pager;
+
+	@Autowired
+    private BatchInserter batchInserter;
+
+	@Autowired
+    private UserExporter exporter;
+
+	@Autowired
+    private UserCache cache;
+
+	@Autowired
+    private KnownIds knownIds;
+
+	@Autowired
+    private ResponseBodyCache bodies;
+
+	@Autowired
+    private UserSearch search;
+
+	@Autowired
+    private UserLookupIndex lookupIndex;
+
+	@Autowired
+    private UserAccounts userAccounts;
+
+	@Autowired
+    private AccountOwners owners;
+
     // Find
     @GetMapping("/users")
     List<User> findAll() {
-        return repository.findAll();
+        return userAccounts.attach(repository.findAll());
+    }
+
+    // Find all with their accounts as read-only projections, one query for the whole response
+    @GetMapping(value = "/users", params = "include=accounts")
+    List<UserSummary> findAllWithAccounts() {
+        return userAccounts.summaries();
+    }
+
+    // Find one keyset page, continue with the returned "next" token
+    @GetMapping("/users/page")
+    KeysetPage<User> findPage(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        return pager.page(after, size,
+                (from, page) -> userAccounts.attach(repository.findByUserIdGreaterThanOrderByUserIdAsc(from, page)),
+                User::getUserId);
+    }
+
+    // Find all, written to the response page by page instead of buffered in one list
+    @GetMapping(value = "/users/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    StreamingResponseBody stream(@RequestParam(required = false) Integer size) {
+        return pager.stream(size,
+                (from, page) -> userAccounts.attach(repository.findByUserIdGreaterThanOrderByUserIdAsc(from, page)),
+                User::getUserId);
+    }
+
+    // Find by exact email or phone number (pages in userId order) or by last or first name prefix (pages in
+    // name order), exactly one of them; continue with the returned "next" token
+    @GetMapping("/users/search")
+    KeysetPage<User> search(@RequestParam(required = false) String email,
+            @RequestParam(required = false) Long phoneNumber,
+            @RequestParam(required = false) String lastName,
+            @RequestParam(required = false) String firstName,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size) {
+        int criteria = (email != null ? 1 : 0) + (phoneNumber != null ? 1 : 0) + (lastName != null ? 1 : 0)
+                + (firstName != null ? 1 : 0);
+        if (criteria != 1) {
+            throw new InvalidSearchException("give exactly one of email, phoneNumber, lastName, firstName");
+        }
+        KeysetPage<User> page;
+        if (email != null) {
+            page = search.byEmail(email, after, size);
+        } else if (phoneNumber != null) {
+            page = search.byPhoneNumber(phoneNumber, after, size);
+        } else {
+            page = lastName != null ? search.byLastNamePrefix(lastName, after, size)
+                    : search.byFirstNamePrefix(firstName, after, size);
+        }
+        userAccounts.attach(page.getItems());
+        return page;
+    }
+
+    // Export all users with their accounts as NDJSON, optionally gzipped
+    @GetMapping("/users/export")
+    void export(@RequestParam(defaultValue = "false") boolean gzip, HttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/x-ndjson");
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        exporter.exportNdjson(out);
+        out.close();
     }
 
     // Save
@@ -37,64 +155,130 @@ public class UserController {
     //return 201 instead of 200
     @ResponseStatus(HttpStatus.CREATED)
     User newUser(@RequestBody User newUser) {
-        return repository.save(newUser);
+        User saved = repository.save(newUser);
+        cache.invalidate(saved.getUserId());
+        bodies.invalidate(ResponseBodyCache.USER, saved.getUserId());
+        knownIds.userSaved(saved);
+        lookupIndex.userSaved(saved);
+        return saved;
     }
 
-    // Find
-    @GetMapping("/users/{userId}")
-    User findOne(@PathVariable Long userId) {
-        return repository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException(userId));
+    // Save many, persisted in chunked batch transactions with one result per item
+    @PostMapping("/users/batch")
+    BatchResult newUsers(@RequestBody List<User> newUsers) {
+        BatchResult result = batchInserter.insert(newUsers, User::getUserId);
+        for (User user : newUsers) {
+            bodies.invalidate(ResponseBodyCache.USER, user.getUserId());
+        }
+        knownIds.usersSaved(newUsers);
+        lookupIndex.usersSaved(newUsers, result);
+        return result;
     }
 
-    // Save or update
-    @PutMapping("/users/{userId}")
-    User saveOrUpdate(@RequestBody User newUser, @PathVariable Long userId) {
-
-         return repository.findById(userId)
-                .map(x -> {
-                    x.setFirstName(newUser.getFirstName());
-                    x.setLastName(newUser.getLastName());
-                    x.setEmail(newUser.getEmail());
-                    x.setPhoneNumber(newUser.getPhoneNumber());
-                    x.setAddressLine1(newUser.getAddressLine1());
-                    x.setAddressLine2(newUser.getAddressLine2());
-                    x.setAccount(newUser.getAccount());
-                    return repository.save(x);
-                })
-                .orElseGet(() -> {
-                    newUser.setUserId(userId);
-                    return repository.save(newUser);
+    // Find; a revalidation (If-None-Match) reads only the user's and its accounts' versions and answers 304
+    // while they still match, JSON is written from the cached encoding (gzipped when accepted) while the ETag
+    // still matches it
+    @GetMapping("/users/{userId}")
+    ResponseEntity<?> findOne(@PathVariable Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // an id the filter has never seen does not exist, skip the query
+        if (!knownIds.users().mightContain(userId)) {
+            throw new UserNotFoundException(userId);
+        }
+        if (ifNoneMatch != null) {
+            Optional<Long> version = repository.findVersionByUserId(userId);
+            String tag = version.isPresent()
+                    ? bodies.responseTag(EntityTags.of(version.get(), userAccounts.versions(userId)), accept,
+                            acceptEncoding)
+                    : null;
+            if (tag != null && EntityTags.matches(ifNoneMatch, tag)) {
+                return bodies.notModified(tag);
+            }
+        }
+        User user = cache.findById(userId)
+                .orElseThrow(() -> {
+                    knownIds.users().falsePositive();
+                    return new UserNotFoundException(userId);
                 });
+        return bodies.respond(ResponseBodyCache.USER, userId, EntityTags.of(user), user, accept, acceptEncoding);
     }
 
-    // update email only
-    @PatchMapping("/users/{userId}")
-    User patch(@RequestBody Map<String, String> update, @PathVariable Long userId) {
-
-        return repository.findById(userId)
-                .map(x -> {
+    // Save or update, a single upsert statement; with If-Match only an update of that version
+    @PutMapping("/users/{userId}")
+    User saveOrUpdate(@RequestBody User newUser, @PathVariable Long userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-                    String email = update.get("email");
-                    if (!StringUtils.isEmpty(email)) {
-                        x.setFirstName(email);
+        newUser.setUserId(userId);
+        if (ifMatch == null) {
+            repository.upsert(newUser);
+        } else if (repository.replace(newUser, EntityTags.requiredVersion(ifMatch)) != 1) {
+            // a user that does not exist matches no tag, not even *
+            throw new PreconditionFailedException(ifMatch);
+        }
+        cache.invalidate(userId);
+        bodies.invalidate(ResponseBodyCache.USER, userId);
+        knownIds.userSaved(newUser);
+        lookupIndex.userSaved(newUser);
+        // the upsert wrote the balances of the accounts in the body
+        if (newUser.getAccount() != null) {
+            List<Long> accountNumbers = new ArrayList<>(newUser.getAccount().size());
+            for (Account account : newUser.getAccount()) {
+                accountNumbers.add(account.getAccountNumber());
+            }
+            owners.accountsChanged(accountNumbers);
+        }
+        return newUser;
+    }
 
-                        // better create a custom method to update a value = :newValue where userId = :userId
-                        return repository.save(x);
-                    } else {
-                        throw new UserUnSupportedFieldPatchException(update.keySet());
-                    }
+    // JSON Merge Patch: one UPDATE of just the fields in the body, null clears a field
+    @PatchMapping(value = "/users/{userId}", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    void patch(@RequestBody Map<String, Object> update, @PathVariable Long userId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-                })
-                .orElseGet(() -> {
-                    throw new UserNotFoundException(userId);
-                });
+        Map<String, Object> changes = PATCHABLE.resolve(update, UserUnSupportedFieldPatchException::new);
+        int found = ifMatch == null ? repository.patch(userId, changes)
+                : repository.patch(userId, changes, EntityTags.requiredVersion(ifMatch));
+        if (found == 0) {
+            throw new UserNotFoundException(userId);
+        }
+        if (found < 0) {
+            throw new PreconditionFailedException(ifMatch);
+        }
+        cache.invalidate(userId);
+        bodies.invalidate(ResponseBodyCache.USER, userId);
+        lookupIndex.userPatched(userId, changes);
 
     }
 
     @DeleteMapping("/users/{userId}")
     void deleteUser(@PathVariable Long userId) {
+        userAccounts.deleteOwnedBy(userId);
         repository.deleteById(userId);
+        cache.invalidate(userId);
+        bodies.invalidate(ResponseBodyCache.USER, userId);
+        knownIds.users().removed();
+        lookupIndex.userDeleted(userId);
+    }
+
+    // Hit/miss/eviction counters of the findOne cache
+    @GetMapping("/users/cache-stats")
+    Map<String, Object> cacheStats() {
+        return cache.stats();
+    }
+
+    // Whether the in-memory lookup index serves /users/search yet, and how many users it holds
+    @GetMapping("/users/index-stats")
+    Map<String, Object> indexStats() {
+        return lookupIndex.stats();
+    }
+
+    // Size and false-positive rates of the user id filter
+    @GetMapping("/users/id-filter-stats")
+    Map<String, Object> idFilterStats() {
+        return knownIds.users().stats();
     }
 
 }
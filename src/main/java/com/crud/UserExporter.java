@@ -0,0 +1,93 @@
+package com.crud;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes every user with its accounts as newline-delimited JSON.
+ * <p>
+ * Users and accounts are read through two cursors sorted by user id and
+ * merge-joined here, so the export costs two queries instead of one per user
+ * and only the current row is ever held in memory.
+ */
+@Service
+public class UserExporter {
+
+    private static final int FLUSH_EVERY = 1000;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private AccountRepository accounts;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public long exportNdjson(OutputStream out) throws IOException {
+        long written = 0;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        try (Stream<User> userRows = users.streamAllByOrderByUserId();
+                Stream<Object[]> accountRows = accounts.streamOwnedOrderByUserId()) {
+            Iterator<Object[]> accountIt = accountRows.iterator();
+            Object[] account = accountIt.hasNext() ? accountIt.next() : null;
+
+            for (Iterator<User> userIt = userRows.iterator(); userIt.hasNext();) {
+                User user = userIt.next();
+                long userId = user.getUserId();
+                writeUserFields(generator, user);
+
+                generator.writeArrayFieldStart("account");
+                while (account != null && (Long) account[0] < userId) {
+                    account = accountIt.hasNext() ? accountIt.next() : null;
+                }
+                while (account != null && (Long) account[0] == userId) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("accountNumber", (Long) account[1]);
+                    generator.writeNumberField("accountBalance", Money.toMajor((Long) account[2]));
+                    generator.writeEndObject();
+                    account = accountIt.hasNext() ? accountIt.next() : null;
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+
+                // nothing keeps a reference to exported rows, including the persistence context
+                entityManager.detach(user);
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        generator.flush();
+        return written;
+    }
+
+    private static void writeUserFields(JsonGenerator generator, User user) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("userId", user.getUserId());
+        generator.writeStringField("firstName", user.getFirstName());
+        generator.writeStringField("lastName", user.getLastName());
+        generator.writeStringField("email", user.getEmail());
+        generator.writeObjectField("phoneNumber", user.getPhoneNumber());
+        generator.writeStringField("addressLine1", user.getAddressLine1());
+        generator.writeStringField("addressLine2", user.getAddressLine2());
+    }
+
+}
@@ -0,0 +1,352 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.replica.ReplicaContext;
+
+/**
+ * In-memory secondary index of users by email, phone number, last name and
+ * first name, enabled with {@code crud.user-index.enabled=true}.
+ * <p>
+ * Each column is a skip list of {@code (value, userId)} entries, so an exact
+ * lookup and a prefix search are both a seek followed by a walk in key
+ * order, without touching the database; only the page of users found is
+ * then read by primary key. The index is built in the background from a scan
+ * of the user table, lookups go to the database until it is ready. Every
+ * handler that writes users must report the write after it has committed;
+ * users written while the scan runs are read again once it has finished, so
+ * the scan never leaves an older row in the index.
+ * <p>
+ * Only writes through this instance are seen, so it must stay off when other
+ * instances or processes write users to the same database.
+ */
+@Component
+public class UserLookupIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserLookupIndex.class);
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${crud.user-index.enabled:false}")
+    private boolean enabled;
+
+    private final NavigableSet<Entry> emails = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Entry> phoneNumbers = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Entry> lastNames = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Entry> firstNames = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Long, Row> rows = new ConcurrentHashMap<>();
+
+    // users written while the build scans, null once it is done
+    private volatile Set<Long> writtenDuringBuild;
+    private volatile boolean ready;
+    private ExecutorService builder;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        writtenDuringBuild = ConcurrentHashMap.newKeySet();
+        builder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "user-index-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        builder.execute(this::build);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (builder != null) {
+            builder.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void userSaved(User user) {
+        if (enabled && user.getUserId() != null) {
+            written(user.getUserId());
+            put(user.getUserId(), new Row(user.getEmail(), user.getPhoneNumber(), user.getLastName(),
+                    user.getFirstName()));
+        }
+    }
+
+    // only the created items of a batch, a failed one may collide with an existing user
+    public void usersSaved(List<User> users, BatchResult result) {
+        for (BatchResult.Item item : result.getItems()) {
+            if (item.getStatus() == BatchResult.Status.CREATED) {
+                userSaved(users.get(item.getIndex()));
+            }
+        }
+    }
+
+    // changes as resolved by UserController.PATCHABLE, a null value clears the field
+    public void userPatched(Long userId, Map<String, Object> changes) {
+        if (!enabled) {
+            return;
+        }
+        written(userId);
+        rows.computeIfPresent(userId, (id, old) -> {
+            Row patched = new Row(
+                    changes.containsKey("email") ? (String) changes.get("email") : old.email,
+                    changes.containsKey("phoneNumber") ? (Long) changes.get("phoneNumber") : old.phoneNumber,
+                    changes.containsKey("lastName") ? (String) changes.get("lastName") : old.lastName,
+                    changes.containsKey("firstName") ? (String) changes.get("firstName") : old.firstName);
+            unindex(id, old);
+            index(id, patched);
+            return patched;
+        });
+    }
+
+    public void userDeleted(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        written(userId);
+        rows.computeIfPresent(userId, (id, old) -> {
+            unindex(id, old);
+            return null;
+        });
+    }
+
+    /**
+     * Up to {@code limit} ids of users with this email, in id order after
+     * {@code afterId}.
+     */
+    public List<Entry> byEmail(String email, long afterId, int limit) {
+        return exact(emails, email, afterId, limit);
+    }
+
+    public List<Entry> byPhoneNumber(Long phoneNumber, long afterId, int limit) {
+        return exact(phoneNumbers, phoneNumber.toString(), afterId, limit);
+    }
+
+    /**
+     * Up to {@code limit} users whose last name starts with {@code prefix},
+     * in (last name, id) order after {@code after}, or from the first one
+     * when it is null.
+     */
+    public List<Entry> byLastNamePrefix(String prefix, KeysetCursor.Position after, int limit) {
+        return prefix(lastNames, prefix, after, limit);
+    }
+
+    public List<Entry> byFirstNamePrefix(String prefix, KeysetCursor.Position after, int limit) {
+        return prefix(firstNames, prefix, after, limit);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("ready", ready);
+        result.put("users", rows.size());
+        return result;
+    }
+
+    private static List<Entry> exact(NavigableSet<Entry> column, String value, long afterId, int limit) {
+        List<Entry> found = new ArrayList<>(Math.min(limit, 16));
+        for (Entry entry : column.tailSet(new Entry(value, afterId), false)) {
+            if (found.size() == limit || !entry.value.equals(value)) {
+                break;
+            }
+            found.add(entry);
+        }
+        return found;
+    }
+
+    private static List<Entry> prefix(NavigableSet<Entry> column, String prefix, KeysetCursor.Position after,
+            int limit) {
+        Entry from = new Entry(prefix, Long.MIN_VALUE);
+        boolean inclusive = true;
+        if (after != null) {
+            Entry cursor = new Entry(after.getSortKey(), after.getKey());
+            if (cursor.compareTo(from) >= 0) {
+                from = cursor;
+                inclusive = false;
+            }
+        }
+        List<Entry> found = new ArrayList<>(Math.min(limit, 16));
+        for (Entry entry : column.tailSet(from, inclusive)) {
+            if (found.size() == limit || !entry.value.startsWith(prefix)) {
+                break;
+            }
+            found.add(entry);
+        }
+        return found;
+    }
+
+    private void written(Long userId) {
+        Set<Long> written = writtenDuringBuild;
+        if (written != null) {
+            written.add(userId);
+        }
+    }
+
+    private void put(Long userId, Row row) {
+        rows.compute(userId, (id, old) -> {
+            if (old != null) {
+                unindex(id, old);
+            }
+            index(id, row);
+            return row;
+        });
+    }
+
+    private void index(long userId, Row row) {
+        add(emails, row.email, userId);
+        add(phoneNumbers, row.phoneNumber == null ? null : row.phoneNumber.toString(), userId);
+        add(lastNames, row.lastName, userId);
+        add(firstNames, row.firstName, userId);
+    }
+
+    private void unindex(long userId, Row row) {
+        remove(emails, row.email, userId);
+        remove(phoneNumbers, row.phoneNumber == null ? null : row.phoneNumber.toString(), userId);
+        remove(lastNames, row.lastName, userId);
+        remove(firstNames, row.firstName, userId);
+    }
+
+    private static void add(NavigableSet<Entry> column, String value, long userId) {
+        if (value != null) {
+            column.add(new Entry(value, userId));
+        }
+    }
+
+    private static void remove(NavigableSet<Entry> column, String value, long userId) {
+        if (value != null) {
+            column.remove(new Entry(value, userId));
+        }
+    }
+
+    private void build() {
+        try {
+            long start = System.nanoTime();
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            boolean wasPinned = ReplicaContext.pinPrimary();
+            try {
+                readOnly.execute(status -> {
+                    try (Stream<Object[]> scan = repository.streamLookupColumns()) {
+                        // a write reported meanwhile is newer than the scanned row
+                        scan.forEach(row -> rows.computeIfAbsent((Long) row[0], id -> {
+                            Row scanned = new Row((String) row[1], (Long) row[2], (String) row[3], (String) row[4]);
+                            index(id, scanned);
+                            return scanned;
+                        }));
+                    }
+                    return null;
+                });
+                // the scan may have read some of these before their write, read them again
+                Set<Long> written = writtenDuringBuild;
+                writtenDuringBuild = null;
+                for (Long userId : written) {
+                    reload(userId);
+                }
+            } finally {
+                ReplicaContext.restore(wasPinned);
+            }
+            ready = true;
+            log.info("user lookup index built: {} users in {} ms", rows.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            writtenDuringBuild = null;
+            log.error("user lookup index build failed, lookups keep using the database", e);
+        }
+    }
+
+    private void reload(Long userId) {
+        User user = repository.findById(userId).orElse(null);
+        if (user == null) {
+            rows.computeIfPresent(userId, (id, old) -> {
+                unindex(id, old);
+                return null;
+            });
+        } else {
+            put(userId, new Row(user.getEmail(), user.getPhoneNumber(), user.getLastName(), user.getFirstName()));
+        }
+    }
+
+    // the indexed columns of one user, as last written
+    private static final class Row {
+
+        final String email;
+        final Long phoneNumber;
+        final String lastName;
+        final String firstName;
+
+        Row(String email, Long phoneNumber, String lastName, String firstName) {
+            this.email = email;
+            this.phoneNumber = phoneNumber;
+            this.lastName = lastName;
+            this.firstName = firstName;
+        }
+    }
+
+    /**
+     * One {@code (value, userId)} pair of a column, ordered by value and then
+     * id like the database index.
+     */
+    public static final class Entry implements Comparable<Entry> {
+
+        private final String value;
+        private final long userId;
+
+        Entry(String value, long userId) {
+            this.value = value;
+            this.userId = userId;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byValue = value.compareTo(other.value);
+            return byValue != 0 ? byValue : Long.compare(userId, other.userId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && ((Entry) o).userId == userId && ((Entry) o).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, userId);
+        }
+    }
+
+}
@@ -1,6 +1,68 @@
 package com.crud;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+
+    // keyset page: rows strictly after the last userId of the previous page
+    List<User> findByUserIdGreaterThanOrderByUserIdAsc(Long userId, Pageable pageable);
+
+    // secondary lookups, keyset pages in userId order over the (column, user_id) indexes
+    List<User> findByEmailAndUserIdGreaterThanOrderByUserIdAsc(String email, Long userId, Pageable pageable);
+
+    List<User> findByPhoneNumberAndUserIdGreaterThanOrderByUserIdAsc(Long phoneNumber, Long userId,
+            Pageable pageable);
+
+    // name prefix search, keyset pages in (name, userId) order; prefix is a LIKE pattern escaped with '!'
+    @Query("select u from User u where u.lastName like :prefix escape '!' and u.lastName >= :afterName"
+            + " and (u.lastName > :afterName or u.userId > :afterId) order by u.lastName, u.userId")
+    List<User> findByLastNamePrefix(@Param("prefix") String prefix, @Param("afterName") String afterName,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select u from User u where u.firstName like :prefix escape '!' and u.firstName >= :afterName"
+            + " and (u.firstName > :afterName or u.userId > :afterId) order by u.firstName, u.userId")
+    List<User> findByFirstNamePrefix(@Param("prefix") String prefix, @Param("afterName") String afterName,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    // [userId, email, phoneNumber, lastName, firstName] of every user, for the in-memory lookup index
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("select u.userId, u.email, u.phoneNumber, u.lastName, u.firstName from User u")
+    Stream<Object[]> streamLookupColumns();
+
+    // server-side cursor for bulk export, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from User u order by u.userId")
+    Stream<User> streamAllByOrderByUserId();
+
+    // key scan for the id filter, must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("select u.userId from User u")
+    Stream<Long> streamAllUserIds();
+
+    // conditional GET: the current version without hydrating the user
+    @Query("select u.version from User u where u.userId = :userId")
+    Optional<Long> findVersionByUserId(@Param("userId") Long userId);
+
+    // [userId, firstName, lastName, email, phoneNumber, addressLine1, addressLine2] in user order
+    @Query("select u.userId, u.firstName, u.lastName, u.email, u.phoneNumber, u.addressLine1, u.addressLine2"
+            + " from User u order by u.userId")
+    List<Object[]> findAllUserRows();
 
-public interface UserRepository extends JpaRepository<User, Long> {
+    // [userId, firstName, lastName, email, phoneNumber, addressLine1, addressLine2, accountNumber, balanceMinor]
+    // one row per account (or one per user without accounts), no entities are hydrated
+    @Query("select u.userId, u.firstName, u.lastName, u.email, u.phoneNumber, u.addressLine1, u.addressLine2,"
+            + " a.accountNumber, a.balanceMinor from User u left join u.account a order by u.userId, a.accountNumber")
+    List<Object[]> findAllWithAccountRows();
 }
@@ -0,0 +1,37 @@
+package com.crud;
+
+import java.util.Map;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Writes only the given attributes with a single UPDATE.
+     *
+     * @return 1 if the user exists, 0 if not
+     */
+    int patch(Long userId, Map<String, Object> changes);
+
+    /**
+     * As {@link #patch(Long, Map)}, written only while the user's version is
+     * still {@code expectedVersion} (an {@code If-Match} precondition).
+     *
+     * @return 1 if written or already matching, 0 if the user does not exist,
+     *         -1 if its version has moved on
+     */
+    int patch(Long userId, Map<String, Object> changes, Long expectedVersion);
+
+    /**
+     * Replaces the fields of an existing user while its version is still
+     * {@code expectedVersion} (any version when null), then upserts the
+     * accounts it carries. Never inserts the user.
+     *
+     * @return as {@link #patch(Long, Map, Long)}
+     */
+    int replace(User user, Long expectedVersion);
+
+    /**
+     * Inserts or replaces the user with one statement, plus one batched
+     * statement for the accounts it carries, if any.
+     */
+    void upsert(User user);
+}
@@ -0,0 +1,74 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final List<String> COLUMNS = Arrays.asList("user_id", "first_name", "last_name", "email",
+            "phone_number", "address_line1", "address_line2");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private Upserter upserter;
+
+    @Override
+    @Transactional
+    public int patch(Long userId, Map<String, Object> changes) {
+        return FieldMaskUpdates.update(entityManager, "User", "userId", "version", userId, changes);
+    }
+
+    @Override
+    @Transactional
+    public int patch(Long userId, Map<String, Object> changes, Long expectedVersion) {
+        return FieldMaskUpdates.update(entityManager, "User", "userId", "version", userId, changes, expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public int replace(User user, Long expectedVersion) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("firstName", user.getFirstName());
+        fields.put("lastName", user.getLastName());
+        fields.put("email", user.getEmail());
+        fields.put("phoneNumber", user.getPhoneNumber());
+        fields.put("addressLine1", user.getAddressLine1());
+        fields.put("addressLine2", user.getAddressLine2());
+        int result = FieldMaskUpdates.update(entityManager, "User", "userId", "version", user.getUserId(), fields,
+                expectedVersion);
+        if (result == 1) {
+            upsertAccounts(user);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void upsert(User user) {
+        upserter.upsert("user", "user_id", COLUMNS, "version", user.getUserId(), user.getFirstName(),
+                user.getLastName(), user.getEmail(), user.getPhoneNumber(), user.getAddressLine1(),
+                user.getAddressLine2());
+        upsertAccounts(user);
+    }
+
+    private void upsertAccounts(User user) {
+        if (user.getAccount() != null) {
+            List<Object[]> accounts = new ArrayList<>(user.getAccount().size());
+            for (Account account : user.getAccount()) {
+                accounts.add(new Object[] { account.getAccountNumber(), account.getBalanceMinor(), user.getUserId() });
+            }
+            upserter.upsertAll("account", "account_number", AccountRepositoryImpl.OWNED_COLUMNS, "version", accounts);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.crud.UserLookupIndex.Entry;
+
+/**
+ * Secondary lookups of users: exact email or phone number in userId order,
+ * last or first name prefix (case-sensitive) in (name, userId) order, all
+ * keyset paged.
+ * <p>
+ * With the {@link UserLookupIndex} built the matching ids come from memory
+ * and only the page is read, by primary key; otherwise the page is one range
+ * scan of the column's {@code (column, user_id)} index.
+ */
+@Component
+public class UserSearch {
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private UserLookupIndex index;
+
+    @Autowired
+    private KeysetPager pager;
+
+    public KeysetPage<User> byEmail(String email, String after, Integer size) {
+        if (index.isReady()) {
+            return load(pager.page(after, size, (from, page) -> index.byEmail(email, from, page.getPageSize()),
+                    Entry::getUserId));
+        }
+        return pager.page(after, size,
+                (from, page) -> repository.findByEmailAndUserIdGreaterThanOrderByUserIdAsc(email, from, page),
+                User::getUserId);
+    }
+
+    public KeysetPage<User> byPhoneNumber(Long phoneNumber, String after, Integer size) {
+        if (index.isReady()) {
+            return load(pager.page(after, size,
+                    (from, page) -> index.byPhoneNumber(phoneNumber, from, page.getPageSize()), Entry::getUserId));
+        }
+        return pager.page(after, size,
+                (from, page) -> repository.findByPhoneNumberAndUserIdGreaterThanOrderByUserIdAsc(phoneNumber, from,
+                        page),
+                User::getUserId);
+    }
+
+    public KeysetPage<User> byLastNamePrefix(String prefix, String after, Integer size) {
+        int pageSize = pager.pageSize(size);
+        KeysetCursor.Position position = after == null ? null : KeysetCursor.decodeSorted(after);
+        if (index.isReady()) {
+            return load(KeysetPage.of(index.byLastNamePrefix(prefix, position, pageSize + 1), pageSize,
+                    Entry::getValue, Entry::getUserId));
+        }
+        List<User> rows = repository.findByLastNamePrefix(likePrefix(prefix),
+                position == null ? "" : position.getSortKey(), position == null ? Long.MIN_VALUE : position.getKey(),
+                PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, User::getLastName, User::getUserId);
+    }
+
+    public KeysetPage<User> byFirstNamePrefix(String prefix, String after, Integer size) {
+        int pageSize = pager.pageSize(size);
+        KeysetCursor.Position position = after == null ? null : KeysetCursor.decodeSorted(after);
+        if (index.isReady()) {
+            return load(KeysetPage.of(index.byFirstNamePrefix(prefix, position, pageSize + 1), pageSize,
+                    Entry::getValue, Entry::getUserId));
+        }
+        List<User> rows = repository.findByFirstNamePrefix(likePrefix(prefix),
+                position == null ? "" : position.getSortKey(), position == null ? Long.MIN_VALUE : position.getKey(),
+                PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, User::getFirstName, User::getUserId);
+    }
+
+    // the page's users by primary key, in index order; one deleted since it was indexed is skipped
+    private KeysetPage<User> load(KeysetPage<Entry> keys) {
+        List<Long> ids = new ArrayList<>(keys.getItems().size());
+        for (Entry entry : keys.getItems()) {
+            ids.add(entry.getUserId());
+        }
+        Map<Long, User> found = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (User user : repository.findAllById(ids)) {
+                found.put(user.getUserId(), user);
+            }
+        }
+        List<User> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = found.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return new KeysetPage<>(users, keys.getNext());
+    }
+
+    private static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.crud;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Read-only view of a user with its accounts, in the same JSON shape as
+ * {@link User}. Built from the flat rows of
+ * {@link UserRepository#findAllWithAccountRows}, so listing users with their
+ * accounts costs one query and hydrates no entities (two with sharded
+ * accounts, see {@link #join}).
+ */
+public class UserSummary {
+
+    private final Long userId;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final Long phoneNumber;
+    private final String addressLine1;
+    private final String addressLine2;
+    private final List<AccountSummary> account = new ArrayList<>();
+
+    UserSummary(Object[] row) {
+        this.userId = (Long) row[0];
+        this.firstName = (String) row[1];
+        this.lastName = (String) row[2];
+        this.email = (String) row[3];
+        this.phoneNumber = (Long) row[4];
+        this.addressLine1 = (String) row[5];
+        this.addressLine2 = (String) row[6];
+    }
+
+    /**
+     * Groups rows ordered by user id; a user without accounts comes as one row
+     * with null account columns.
+     */
+    static List<UserSummary> fromRows(List<Object[]> rows) {
+        List<UserSummary> users = new ArrayList<>();
+        UserSummary current = null;
+        for (Object[] row : rows) {
+            if (current == null || !current.userId.equals(row[0])) {
+                current = new UserSummary(row);
+                users.add(current);
+            }
+            if (row[7] != null) {
+                current.account.add(new AccountSummary((Long) row[7], (Long) row[8]));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Merge-joins user rows of {@link UserRepository#findAllUserRows} with
+     * account rows of {@link AccountRepository#streamOwnedOrderByUserId},
+     * both in user order.
+     */
+    static List<UserSummary> join(List<Object[]> userRows, Stream<Object[]> accountRows) {
+        List<UserSummary> users = new ArrayList<>(userRows.size());
+        Iterator<Object[]> accounts = accountRows.iterator();
+        Object[] account = accounts.hasNext() ? accounts.next() : null;
+        for (Object[] row : userRows) {
+            UserSummary user = new UserSummary(row);
+            while (account != null && (Long) account[0] < user.userId) {
+                account = accounts.hasNext() ? accounts.next() : null;
+            }
+            while (account != null && account[0].equals(user.userId)) {
+                user.account.add(new AccountSummary((Long) account[1], (Long) account[2]));
+                account = accounts.hasNext() ? accounts.next() : null;
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Long getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getAddressLine1() {
+        return addressLine1;
+    }
+
+    public String getAddressLine2() {
+        return addressLine2;
+    }
+
+    public List<AccountSummary> getAccount() {
+        return account;
+    }
+}
@@ -0,0 +1,90 @@
+package com.crud;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sql.DataSource;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Runs request handling, and so every repository call it makes, on virtual
+ * threads when {@code crud.virtual-threads.enabled=true}. Needs a Java 21
+ * runtime; the executor is looked up reflectively so the code still builds
+ * for older targets.
+ * <p>
+ * The application's Hikari pool is wrapped in a
+ * {@link ConnectionLimitingDataSource} sized to the pool, or to
+ * {@code crud.virtual-threads.db-permits}, before a replica or shard router
+ * is put in front of it; the replica and shard pools are not limited. Pinning diagnostics ({@code jdk.tracePinnedThreads}) can be
+ * switched on with {@code crud.virtual-threads.trace-pinned}, which reports
+ * the {@code synchronized} sections of the JDBC driver and Hibernate a
+ * virtual thread blocks in while holding its carrier.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crud.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutor(Environment env) {
+        String tracePinned = env.getProperty("crud.virtual-threads.trace-pinned", "");
+        if (!tracePinned.isEmpty() && System.getProperty("jdk.tracePinnedThreads") == null) {
+            // read once, when the first virtual thread is created, so this must happen before Tomcat starts
+            System.setProperty("jdk.tracePinnedThreads", tracePinned);
+        }
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("request handling runs on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    // ahead of the routing data sources, which wrap the application pool once it is limited
+    @Bean
+    static BeanPostProcessor connectionLimitingDataSource(Environment env) {
+        return new OrderedBeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // only a pool knows its size; a proxy or router in front of one is left alone
+                if (!(bean instanceof HikariDataSource)) {
+                    return bean;
+                }
+                int permits = env.getProperty("crud.virtual-threads.db-permits", Integer.class, 0);
+                if (permits <= 0) {
+                    permits = ((HikariDataSource) bean).getMaximumPoolSize();
+                }
+                long timeout = env.getProperty("crud.virtual-threads.db-acquire-timeout-ms", Long.class, 30000L);
+                log.info("data source {} limited to {} concurrent connections", beanName, permits);
+                return new ConnectionLimitingDataSource((DataSource) bean, permits, timeout);
+            }
+        };
+    }
+
+    private interface OrderedBeanPostProcessor extends BeanPostProcessor, Ordered {
+
+        @Override
+        default int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("crud.virtual-threads.enabled needs a Java 21+ runtime, running "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.crud;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+
+/**
+ * Binary encodings chosen through {@code Accept} / {@code Content-Type}:
+ * {@code application/cbor}, {@code application/x-jackson-smile} and
+ * {@code application/x-protobuf} (users and accounts only, see
+ * {@link JacksonProtobufHttpMessageConverter}).
+ * <p>
+ * The converters are appended after the defaults, so JSON stays the answer
+ * to {@code Accept: *}{@code /*} and to requests without an {@code Accept}.
+ * The streamed and exported endpoints write JSON themselves and are not
+ * affected.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    // not beans: Boot puts converter beans ahead of the defaults, which would make them the default
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // writes only ResponseBodyCache entries, whatever the content type, so it can go first
+        converters.add(0, new CachedBodyHttpMessageConverter());
+        converters.add(new MappingJackson2CborHttpMessageConverter());
+        converters.add(new MappingJackson2SmileHttpMessageConverter());
+        converters.add(new JacksonProtobufHttpMessageConverter(new ProtobufMapper()));
+    }
+
+}
@@ -3,7 +3,8 @@ package com.crud.error;
 public class AccountNotFoundException extends RuntimeException {
 
     public AccountNotFoundException(Long id) {
-        super("Account Number not found : " + id);
+        // thrown on every lookup miss, a hot path under id probing; the stack trace is never logged, so skip it
+        super("Account Number not found : " + id, null, false, false);
     }
 
 }
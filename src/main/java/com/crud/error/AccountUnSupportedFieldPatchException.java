@@ -0,0 +1,11 @@
+package com.crud.error;
+
+import java.util.Set;
+
+public class AccountUnSupportedFieldPatchException extends RuntimeException {
+
+    public AccountUnSupportedFieldPatchException(Set<String> keys) {
+        super("Field " + keys.toString() + " update is not allow.");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(int size, int max) {
+        super("Batch of " + size + " items exceeds the limit of " + max);
+    }
+
+}
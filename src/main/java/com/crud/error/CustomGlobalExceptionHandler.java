@@ -1,31 +1,132 @@
 package com.crud.error;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @ControllerAdvice
 public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler {
 
-    // Let Spring handle the exception, we just override the status code
+    static final String ERRORS_METRIC = "crud.errors";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @ExceptionHandler(UserNotFoundException.class)
-    public void springHandleNotFound(HttpServletResponse response) throws IOException {
-        response.sendError(HttpStatus.NOT_FOUND.value());
+    public void springHandleNotFound(UserNotFoundException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.NOT_FOUND, request, response);
     }
 
     @ExceptionHandler(UserUnSupportedFieldPatchException.class)
-    public void springUnSupportedFieldPatch(HttpServletResponse response) throws IOException {
-        response.sendError(HttpStatus.METHOD_NOT_ALLOWED.value());
+    public void springUnSupportedFieldPatch(UserUnSupportedFieldPatchException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.METHOD_NOT_ALLOWED, request, response);
     }
     
+    @ExceptionHandler(AccountUnSupportedFieldPatchException.class)
+    public void springAccountUnSupportedFieldPatch(AccountUnSupportedFieldPatchException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.METHOD_NOT_ALLOWED, request, response);
+    }
+
     @ExceptionHandler(AccountNotFoundException.class)
-    public void springHandleAccountNotFound(HttpServletResponse response) throws IOException {
-        response.sendError(HttpStatus.NOT_FOUND.value());
+    public void springHandleAccountNotFound(AccountNotFoundException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.NOT_FOUND, request, response);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public void springHandleInvalidCursor(InvalidCursorException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.BAD_REQUEST, request, response);
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public void springHandleBatchTooLarge(BatchTooLargeException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.PAYLOAD_TOO_LARGE, request, response);
+    }
+
+    @ExceptionHandler(ImportFileException.class)
+    public void springHandleImportFile(ImportFileException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.BAD_REQUEST, request, response);
+    }
+
+    @ExceptionHandler(ImportJobNotFoundException.class)
+    public void springHandleImportJobNotFound(ImportJobNotFoundException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.NOT_FOUND, request, response);
+    }
+
+    @ExceptionHandler(InvalidTransferException.class)
+    public void springHandleInvalidTransfer(InvalidTransferException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.BAD_REQUEST, request, response);
     }
 
+    @ExceptionHandler(InvalidSearchException.class)
+    public void springHandleInvalidSearch(InvalidSearchException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.BAD_REQUEST, request, response);
+    }
+
+    @ExceptionHandler(InvalidAdjustmentException.class)
+    public void springHandleInvalidAdjustment(InvalidAdjustmentException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.BAD_REQUEST, request, response);
+    }
+
+    @ExceptionHandler(LedgerUnavailableException.class)
+    public void springHandleLedgerUnavailable(LedgerUnavailableException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.SERVICE_UNAVAILABLE, request, response);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public void springHandlePreconditionFailed(PreconditionFailedException e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.PRECONDITION_FAILED, request, response);
+    }
+
+    // insufficient funds, and concurrent writers that outlasted the retries
+    @ExceptionHandler({ InsufficientFundsException.class, ConcurrencyFailureException.class })
+    public void springHandleConflict(Exception e, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        error(e, HttpStatus.CONFLICT, request, response);
+    }
+
+    // Spring MVC's own exceptions (unreadable body, type mismatch, ...) are counted too
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(Exception ex, Object body, HttpHeaders headers,
+            HttpStatus status, WebRequest request) {
+        count(ex, status);
+        return super.handleExceptionInternal(ex, body, headers, status, request);
+    }
+
+    // written here rather than through sendError, which would forward to /error and render it there
+    private void error(Exception e, HttpStatus status, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        count(e, status);
+        ProblemResponses.write(response, status, e.getMessage(), request.getRequestURI());
+    }
+
+    private void count(Exception e, HttpStatus status) {
+        meterRegistry.counter(ERRORS_METRIC, "exception", e.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+    }
 
 }
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class ImportFileException extends RuntimeException {
+
+    public ImportFileException(String file, String reason) {
+        super("Import file " + file + " " + reason);
+    }
+
+}
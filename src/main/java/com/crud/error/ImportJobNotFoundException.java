@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class ImportJobNotFoundException extends RuntimeException {
+
+    public ImportJobNotFoundException(String id) {
+        super("Import job not found : " + id);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class InsufficientFundsException extends RuntimeException {
+
+    public InsufficientFundsException(Long accountNumber) {
+        super("Insufficient funds : " + accountNumber);
+    }
+
+}
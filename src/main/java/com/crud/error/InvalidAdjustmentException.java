@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class InvalidAdjustmentException extends RuntimeException {
+
+    public InvalidAdjustmentException(String reason) {
+        super("Invalid adjustment : " + reason);
+    }
+
+}
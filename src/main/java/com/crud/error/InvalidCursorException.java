@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String token) {
+        super("Invalid page cursor : " + token);
+    }
+
+}
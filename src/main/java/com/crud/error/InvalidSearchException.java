@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class InvalidSearchException extends RuntimeException {
+
+    public InvalidSearchException(String reason) {
+        super("Invalid search : " + reason);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class InvalidTransferException extends RuntimeException {
+
+    public InvalidTransferException(String reason) {
+        super("Invalid transfer : " + reason);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class LedgerUnavailableException extends RuntimeException {
+
+    public LedgerUnavailableException(String reason, Throwable cause) {
+        super("Ledger unavailable : " + reason, cause);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.crud.error;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String ifMatch) {
+        super("Entity tag does not match : " + ifMatch);
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.crud.error;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * Writes an {@code application/problem+json} error body straight to the
+ * response, with the status, error, message and path fields Boot's error
+ * controller used to render.
+ */
+public final class ProblemResponses {
+
+    public static final String CONTENT_TYPE = "application/problem+json";
+
+    private ProblemResponses() {
+    }
+
+    public static void write(HttpServletResponse response, HttpStatus status, String message, String path)
+            throws IOException {
+        StringBuilder json = new StringBuilder(96)
+                .append("{\"status\":").append(status.value())
+                .append(",\"error\":\"").append(status.getReasonPhrase()).append('"');
+        if (message != null) {
+            json.append(",\"message\":\"").append(JsonStringEncoder.getInstance().quoteAsString(message)).append('"');
+        }
+        json.append(",\"path\":\"").append(JsonStringEncoder.getInstance().quoteAsString(path)).append("\"}");
+
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status.value());
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+}
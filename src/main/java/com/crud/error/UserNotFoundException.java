@@ -3,7 +3,8 @@ package com.crud.error;
 public class UserNotFoundException extends RuntimeException {
 
     public UserNotFoundException(Long id) {
-        super("User id not found : " + id);
+        // thrown on every lookup miss, a hot path under id probing; the stack trace is never logged, so skip it
+        super("User id not found : " + id, null, false, false);
     }
 
 }
@@ -0,0 +1,141 @@
+package com.crud.imports;
+
+import java.nio.ByteBuffer;
+
+import com.crud.Money;
+
+/**
+ * Parses {@code accountNumber,accountBalance,user_id} lines straight out of a
+ * (memory-mapped) byte buffer. Fields are decoded in place into primitives,
+ * nothing is allocated per line. Balances are returned in minor units; more
+ * than two decimals is a malformed line.
+ */
+final class AccountCsvParser {
+
+    interface RowSink {
+
+        /** {@code endOffset} is the file offset just past the line's terminator. */
+        void row(long accountNumber, long balanceMinor, long userId, long endOffset);
+
+        void malformed(long lineOffset);
+    }
+
+    // factor from an amount with 0, 1 or 2 decimals to minor units
+    private static final long[] TO_MINOR = { 100, 10, 1 };
+
+    private boolean skipHeader;
+
+    // scratch for the field being decoded
+    private long value;
+    private int scale;
+
+    AccountCsvParser(boolean skipHeader) {
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * Parses every complete line in {@code buffer} and returns the number of
+     * bytes consumed. A trailing partial line is left for the next buffer
+     * unless {@code endOfFile} is set.
+     */
+    int parse(ByteBuffer buffer, long baseOffset, boolean endOfFile, RowSink sink) {
+        int limit = buffer.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                line(buffer, lineStart, i, baseOffset, baseOffset + i + 1, sink);
+                lineStart = i + 1;
+            }
+        }
+        if (endOfFile && lineStart < limit) {
+            line(buffer, lineStart, limit, baseOffset, baseOffset + limit, sink);
+            lineStart = limit;
+        }
+        return lineStart;
+    }
+
+    private void line(ByteBuffer buffer, int start, int end, long baseOffset, long endOffset, RowSink sink) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+        if (skipHeader) {
+            skipHeader = false;
+            byte first = buffer.get(start);
+            if (first != '-' && (first < '0' || first > '9')) {
+                return;
+            }
+        }
+        int comma1 = indexOf(buffer, ',', start, end);
+        int comma2 = comma1 < 0 ? -1 : indexOf(buffer, ',', comma1 + 1, end);
+        if (comma2 < 0 || indexOf(buffer, ',', comma2 + 1, end) >= 0) {
+            sink.malformed(baseOffset + start);
+            return;
+        }
+        if (!decimal(buffer, start, comma1) || scale != 0) {
+            sink.malformed(baseOffset + start);
+            return;
+        }
+        long accountNumber = value;
+        if (!decimal(buffer, comma1 + 1, comma2) || scale > Money.SCALE
+                || Math.abs(value) > Long.MAX_VALUE / TO_MINOR[scale]) {
+            sink.malformed(baseOffset + start);
+            return;
+        }
+        long balanceMinor = value * TO_MINOR[scale];
+        if (!decimal(buffer, comma2 + 1, end) || scale != 0) {
+            sink.malformed(baseOffset + start);
+            return;
+        }
+        sink.row(accountNumber, balanceMinor, value, endOffset);
+    }
+
+    /**
+     * Decodes an optionally signed decimal of at most 18 digits into
+     * {@link #value} (unscaled) and {@link #scale} (digits after the point).
+     */
+    private boolean decimal(ByteBuffer buffer, int from, int to) {
+        while (from < to && buffer.get(from) == ' ') {
+            from++;
+        }
+        while (to > from && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+        boolean negative = from < to && buffer.get(from) == '-';
+        if (negative) {
+            from++;
+        }
+        long result = 0;
+        int digits = 0;
+        int pointAt = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && pointAt < 0) {
+                pointAt = digits;
+            } else if (b >= '0' && b <= '9' && digits < 18) {
+                result = result * 10 + (b - '0');
+                digits++;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        value = negative ? -result : result;
+        scale = pointAt < 0 ? 0 : digits - pointAt;
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
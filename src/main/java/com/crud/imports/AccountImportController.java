@@ -0,0 +1,41 @@
+package com.crud.imports;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.crud.error.ImportFileException;
+import com.crud.error.ImportJobNotFoundException;
+
+@RestController
+public class AccountImportController {
+
+    @Autowired
+    private AccountImporter importer;
+
+    // Start importing {"file": "<name>"} from the import directory, resuming from its checkpoint if any
+    @PostMapping("/accounts/import")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    AccountImportJob start(@RequestBody Map<String, String> request) {
+        String file = request.get("file");
+        if (file == null || file.isEmpty()) {
+            throw new ImportFileException(String.valueOf(file), "is not a file name");
+        }
+        return importer.start(file);
+    }
+
+    // Progress
+    @GetMapping("/accounts/import/{jobId}")
+    AccountImportJob status(@PathVariable String jobId) {
+        return importer.find(jobId)
+                .orElseThrow(() -> new ImportJobNotFoundException(jobId));
+    }
+
+}
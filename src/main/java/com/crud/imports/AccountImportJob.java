@@ -0,0 +1,131 @@
+package com.crud.imports;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Progress of one CSV import, serialised as the job status resource.
+ */
+public class AccountImportJob {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final Path file;
+    private volatile Status status = Status.RUNNING;
+    private volatile long fileSize;
+    private volatile long startOffset;
+    private volatile long committedOffset;
+    private volatile String error;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final AtomicLong rowsMalformed = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    AccountImportJob(String id, Path file) {
+        this.id = id;
+        this.file = file;
+    }
+
+    void begin(long fileSize, long startOffset) {
+        this.fileSize = fileSize;
+        this.startOffset = startOffset;
+        this.committedOffset = startOffset;
+    }
+
+    void committed(long offset) {
+        committedOffset = offset;
+    }
+
+    void completed() {
+        status = Status.COMPLETED;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        status = Status.FAILED;
+    }
+
+    boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    AtomicLong rowsRead() {
+        return rowsRead;
+    }
+
+    AtomicLong rowsInserted() {
+        return rowsInserted;
+    }
+
+    AtomicLong rowsRejected() {
+        return rowsRejected;
+    }
+
+    AtomicLong rowsMalformed() {
+        return rowsMalformed;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public Path getFile() {
+        return file;
+    }
+
+    public String getFileName() {
+        return file.getFileName().toString();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    public double getPercentComplete() {
+        return fileSize == 0 ? 100.0 : committedOffset * 100.0 / fileSize;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    /** Rows whose user does not exist or whose account number is already taken. */
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public long getRowsMalformed() {
+        return rowsMalformed.get();
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
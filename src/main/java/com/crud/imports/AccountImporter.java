@@ -0,0 +1,292 @@
+package com.crud.imports;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.AccountOwners;
+import com.crud.KnownIds;
+import com.crud.error.ImportFileException;
+
+/**
+ * Bulk loads accounts from a CSV file in the configured import directory.
+ * <p>
+ * One reader thread maps the file a segment at a time and parses it into
+ * column-wise {@link RowBatch}es; a bounded queue feeds a fixed set of writer
+ * threads that insert each batch as one JDBC batch in its own transaction.
+ * The insert only succeeds when the referenced user exists and the account
+ * number is new, so validation costs no extra round trip and a resumed import
+ * can safely replay batches that were committed after the last checkpoint.
+ */
+@Service
+public class AccountImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountImporter.class);
+
+    static final String INSERT_SQL = "insert into account (account_number, balance_minor, user_id, version)"
+            + " select ?, ?, u.user_id, 0 from user u where u.user_id = ?"
+            + " and not exists (select 1 from account a where a.account_number = ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private KnownIds knownIds;
+
+    @Autowired
+    private AccountOwners owners;
+
+    @Value("${crud.import.dir:import}")
+    private String importDir;
+
+    @Value("${crud.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${crud.import.writers:4}")
+    private int writers;
+
+    @Value("${crud.import.queue-depth:16}")
+    private int queueDepth;
+
+    @Value("${crud.import.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${crud.import.checkpoint-interval-ms:5000}")
+    private long checkpointIntervalMillis;
+
+    private final Map<String, AccountImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    private final ExecutorService runner = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "account-import-" + threadIds.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public synchronized AccountImportJob start(String fileName) {
+        Path dir = Paths.get(importDir).toAbsolutePath().normalize();
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+            throw new ImportFileException(fileName, "not found in the import directory");
+        }
+        for (AccountImportJob running : jobs.values()) {
+            if (running.getStatus() == AccountImportJob.Status.RUNNING && running.getFile().equals(file)) {
+                throw new ImportFileException(fileName, "is already being imported by job " + running.getId());
+            }
+        }
+        AccountImportJob job = new AccountImportJob(UUID.randomUUID().toString(), file);
+        jobs.put(job.getId(), job);
+        runner.execute(() -> run(job));
+        return job;
+    }
+
+    public Optional<AccountImportJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private void run(AccountImportJob job) {
+        Path checkpointFile = ImportCheckpoint.forCsv(job.getFile());
+        ExecutorService pool = Executors.newFixedThreadPool(writers, r -> {
+            Thread t = new Thread(r, "account-import-writer-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(job.getFile(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(ImportCheckpoint.read(checkpointFile), size);
+            job.begin(size, start);
+            log.info("import {} {}: {} bytes, starting at offset {}", job.getId(), job.getFileName(), size, start);
+
+            ImportCheckpoint checkpoint = new ImportCheckpoint(job, checkpointFile, start, checkpointIntervalMillis);
+            BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(queueDepth);
+            for (int i = 0; i < writers; i++) {
+                pool.execute(() -> write(queue, job, checkpoint));
+            }
+            try {
+                read(channel, size, start, queue, job);
+            } finally {
+                for (int i = 0; i < writers; i++) {
+                    queue.put(RowBatch.END);
+                }
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                checkpoint.write();
+            }
+            if (!job.isFailed()) {
+                job.completed();
+                checkpoint.delete();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failed("interrupted");
+        } catch (IOException | RuntimeException e) {
+            job.failed(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        log.info("import {} {}: {} after {} ms, {} inserted, {} rejected, {} malformed{}", job.getId(),
+                job.getFileName(), job.getStatus(), job.getElapsedMillis(), job.getRowsInserted(),
+                job.getRowsRejected(), job.getRowsMalformed(), job.getError() == null ? "" : ": " + job.getError());
+    }
+
+    private void read(FileChannel channel, long size, long start, BlockingQueue<RowBatch> queue, AccountImportJob job)
+            throws IOException, InterruptedException {
+        BatchingSink sink = new BatchingSink(queue, job);
+        AccountCsvParser parser = new AccountCsvParser(start == 0);
+        long position = start;
+        while (position < size && !job.isFailed()) {
+            long length = Math.min(segmentBytes, size - position);
+            boolean last = position + length == size;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int consumed = parser.parse(segment, position, last, sink);
+            if (consumed == 0 && !last) {
+                throw new IllegalStateException("line at offset " + position + " is longer than "
+                        + segmentBytes + " bytes");
+            }
+            position += consumed;
+        }
+        sink.finish();
+    }
+
+    private void write(BlockingQueue<RowBatch> queue, AccountImportJob job, ImportCheckpoint checkpoint) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        try {
+            RowBatch batch;
+            while ((batch = queue.take()) != RowBatch.END) {
+                // after a failure keep draining so the reader never blocks on a full queue
+                if (job.isFailed()) {
+                    continue;
+                }
+                RowBatch rows = batch;
+                try {
+                    int[] counts = tx.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, new Setter(rows)));
+                    long inserted = 0;
+                    for (int count : counts) {
+                        if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                            inserted++;
+                        }
+                    }
+                    // rejected rows were either already there or not inserted, adding them is harmless
+                    knownIds.accounts().addAll(rows.accountNumbers, rows.size);
+                    owners.evict(rows.distinctUserIds());
+                    job.rowsInserted().addAndGet(inserted);
+                    job.rowsRejected().addAndGet(rows.size - inserted);
+                    checkpoint.committed(rows.seq, rows.endOffset);
+                } catch (RuntimeException e) {
+                    log.error("import {} {}: batch {} failed", job.getId(), job.getFileName(), rows.seq, e);
+                    job.failed(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class BatchingSink implements AccountCsvParser.RowSink {
+
+        private final BlockingQueue<RowBatch> queue;
+        private final AccountImportJob job;
+        private long seq;
+        private RowBatch batch;
+
+        BatchingSink(BlockingQueue<RowBatch> queue, AccountImportJob job) {
+            this.queue = queue;
+            this.job = job;
+            this.batch = new RowBatch(seq++, batchSize);
+        }
+
+        @Override
+        public void row(long accountNumber, long balanceMinor, long userId, long endOffset) {
+            batch.add(accountNumber, balanceMinor, userId, endOffset);
+            job.rowsRead().incrementAndGet();
+            if (batch.isFull()) {
+                put(batch);
+                batch = new RowBatch(seq++, batchSize);
+            }
+        }
+
+        @Override
+        public void malformed(long lineOffset) {
+            if (job.rowsMalformed().incrementAndGet() <= 10) {
+                log.warn("import {} {}: malformed line at offset {}", job.getId(), job.getFileName(), lineOffset);
+            }
+        }
+
+        void finish() {
+            if (batch.size > 0) {
+                put(batch);
+            }
+        }
+
+        private void put(RowBatch full) {
+            try {
+                queue.put(full);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("import interrupted", e);
+            }
+        }
+    }
+
+    private static final class Setter implements BatchPreparedStatementSetter {
+
+        private final RowBatch rows;
+
+        Setter(RowBatch rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setLong(1, rows.accountNumbers[i]);
+            ps.setLong(2, rows.balancesMinor[i]);
+            ps.setLong(3, rows.userIds[i]);
+            ps.setLong(4, rows.accountNumbers[i]);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return rows.size;
+        }
+    }
+
+}
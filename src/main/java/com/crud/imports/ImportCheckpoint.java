@@ -0,0 +1,90 @@
+package com.crud.imports;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks which batches are committed and persists the file offset up to which
+ * every batch is committed. Writers finish out of order, so the checkpoint
+ * only advances over a contiguous run of sequence numbers; a resumed import
+ * starts from that offset.
+ */
+final class ImportCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportCheckpoint.class);
+
+    private final AccountImportJob job;
+    private final Path file;
+    private final long writeIntervalMillis;
+    private final TreeMap<Long, Long> pending = new TreeMap<>();
+    private long nextSeq;
+    private long offset;
+    private long lastWrite;
+    private long lastRows;
+
+    ImportCheckpoint(AccountImportJob job, Path file, long startOffset, long writeIntervalMillis) {
+        this.job = job;
+        this.file = file;
+        this.offset = startOffset;
+        this.writeIntervalMillis = writeIntervalMillis;
+        this.lastWrite = System.currentTimeMillis();
+    }
+
+    static Path forCsv(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + ".checkpoint");
+    }
+
+    static long read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+    }
+
+    synchronized void committed(long seq, long endOffset) {
+        pending.put(seq, endOffset);
+        boolean advanced = false;
+        Long end;
+        while ((end = pending.remove(nextSeq)) != null) {
+            offset = end;
+            nextSeq++;
+            advanced = true;
+        }
+        if (!advanced) {
+            return;
+        }
+        job.committed(offset);
+        long now = System.currentTimeMillis();
+        if (now - lastWrite >= writeIntervalMillis) {
+            long rows = job.getRowsInserted() + job.getRowsRejected();
+            log.info("import {} {}: {}% committed, {} inserted, {} rejected, {} malformed, {} rows/s", job.getId(),
+                    job.getFileName(), String.format("%.1f", job.getPercentComplete()), job.getRowsInserted(),
+                    job.getRowsRejected(), job.getRowsMalformed(), (rows - lastRows) * 1000 / (now - lastWrite));
+            write();
+            lastWrite = now;
+            lastRows = rows;
+        }
+    }
+
+    synchronized void write() {
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,46 @@
+package com.crud.imports;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Column-wise block of parsed rows handed from the reader to the writers.
+ */
+final class RowBatch {
+
+    static final RowBatch END = new RowBatch(-1, 0);
+
+    final long seq;
+    final long[] accountNumbers;
+    final long[] balancesMinor;
+    final long[] userIds;
+    int size;
+    long endOffset;
+
+    RowBatch(long seq, int capacity) {
+        this.seq = seq;
+        this.accountNumbers = new long[capacity];
+        this.balancesMinor = new long[capacity];
+        this.userIds = new long[capacity];
+    }
+
+    void add(long accountNumber, long balanceMinor, long userId, long endOffset) {
+        accountNumbers[size] = accountNumber;
+        balancesMinor[size] = balanceMinor;
+        userIds[size] = userId;
+        size++;
+        this.endOffset = endOffset;
+    }
+
+    Set<Long> distinctUserIds() {
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            distinct.add(userIds[i]);
+        }
+        return distinct;
+    }
+
+    boolean isFull() {
+        return size == accountNumbers.length;
+    }
+}
@@ -0,0 +1,391 @@
+package com.crud.ledger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.crud.AccountOwners;
+import com.crud.Money;
+import com.crud.error.AccountNotFoundException;
+import com.crud.error.InsufficientFundsException;
+import com.crud.error.InvalidAdjustmentException;
+import com.crud.error.LedgerUnavailableException;
+
+/**
+ * In-memory balance ledger with write-behind persistence, enabled with
+ * {@code crud.ledger.enabled=true}.
+ * <p>
+ * Balances of the accounts adjusted through the ledger are held in
+ * lock-striped primitive maps, loaded from the database on first use. An
+ * adjustment takes one stripe lock, checks and applies the new balance,
+ * accumulates the net delta for the account and queues a journal record;
+ * it is acknowledged once the journal has fsynced it. Every
+ * {@code crud.ledger.flush-interval-ms} the pending deltas are cut (all
+ * stripe locks held just long enough to swap the maps) and written as one
+ * JDBC batch of {@code balance_minor = balance_minor + ?} updates together
+ * with the checkpoint row, after which the journal segments before the cut
+ * are deleted. On start the journal past the checkpoint is replayed into the
+ * database, so an acknowledged adjustment survives a crash.
+ * <p>
+ * Other writers (PUT, PATCH, transfers) still update the row directly and
+ * report it through {@link AccountOwners#accountsChanged}, which drops the
+ * account from the ledger with {@link #balancesWritten}. The additive flush
+ * does not overwrite their writes, and the next adjustment reloads the
+ * balance as the stored row plus the deltas not yet flushed into it. The
+ * flush update itself will not take a balance below zero.
+ */
+@Service
+@ConditionalOnProperty(name = "crud.ledger.enabled", havingValue = "true")
+@DependsOn("entityManagerFactory")
+public class Ledger {
+
+    private static final Logger log = LoggerFactory.getLogger(Ledger.class);
+
+    private static final String APPLY_SQL = "update account set balance_minor = balance_minor + ?,"
+            + " version = version + 1 where account_number = ? and balance_minor + ? >= 0";
+
+    private static final String CHECKPOINT_SQL = "update ledger_checkpoint set applied_seq = ? where id = ?";
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongLongHashMap balances = new LongLongHashMap();
+        LongLongHashMap deltas = new LongLongHashMap();
+        // direct writes dropped from this stripe, a load that raced one is retried
+        long writes;
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AccountOwners owners;
+
+    @Value("${crud.ledger.dir:ledger}")
+    private String dir;
+
+    @Value("${crud.ledger.stripes:64}")
+    private int stripeCount;
+
+    @Value("${crud.ledger.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${crud.ledger.group-commit-max:256}")
+    private int groupCommitMax;
+
+    private final AtomicLong lastSeq = new AtomicLong();
+
+    private Stripe[] stripes;
+
+    // held exclusively while a cut is written, so a load sees a cut either in the row or in flushing
+    private final ReadWriteLock persisting = new ReentrantReadWriteLock();
+
+    // the cut being written, guarded by the stripe locks and persisting
+    private LongLongHashMap[] flushing;
+
+    private LedgerJournal journal;
+
+    private ScheduledExecutorService flusher;
+
+    private long flushedSeq;
+
+    private volatile boolean failed;
+
+    @PostConstruct
+    void start() throws IOException {
+        Path path = Paths.get(dir).toAbsolutePath();
+        Files.createDirectories(path);
+
+        stripes = new Stripe[Integer.highestOneBit(Math.max(stripeCount, 1) * 2 - 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        if (jdbcTemplate.queryForObject("select count(*) from ledger_checkpoint where id = ?", Long.class,
+                LedgerCheckpoint.ID) == 0) {
+            jdbcTemplate.update("insert into ledger_checkpoint (id, applied_seq) values (?, 0)", LedgerCheckpoint.ID);
+        }
+        long applied = jdbcTemplate.queryForObject("select applied_seq from ledger_checkpoint where id = ?",
+                Long.class, LedgerCheckpoint.ID);
+        LongLongHashMap recovered = new LongLongHashMap();
+        long last = LedgerJournal.replay(path, applied, (seq, accountNumber, deltaMinor) -> recovered.addTo(accountNumber,
+                deltaMinor));
+        if (last > applied) {
+            persist(new LongLongHashMap[] { recovered }, last);
+            log.info("ledger: replayed journal {} to {} over {} accounts", applied + 1, last, recovered.size());
+        }
+        lastSeq.set(last);
+        flushedSeq = last;
+
+        journal = new LedgerJournal(path, last + 1, groupCommitMax);
+        journal.deleteSegmentsBefore(last + 1);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        journal.close();
+    }
+
+    /**
+     * Adds {@code amount} (negative to withdraw) to the account's balance.
+     *
+     * @return the balance after the adjustment, once the adjustment is durable
+     */
+    public LedgerBalance adjust(Long accountNumber, BigDecimal amount) {
+        long delta = toDelta(amount);
+        int index = index(accountNumber);
+        Stripe stripe = stripes[index];
+
+        long balance;
+        CompletableFuture<Void> durable;
+        for (;;) {
+            load(index, accountNumber);
+            stripe.lock.lock();
+            try {
+                if (failed) {
+                    throw new LedgerUnavailableException("journal failed", null);
+                }
+                if (!stripe.balances.containsKey(accountNumber)) {
+                    // dropped by a direct write since the load
+                    continue;
+                }
+                long current = stripe.balances.get(accountNumber, 0);
+                if (delta < 0 && current + delta < 0) {
+                    throw new InsufficientFundsException(accountNumber);
+                }
+                if (delta > 0 && current > Long.MAX_VALUE - delta) {
+                    throw new InvalidAdjustmentException("balance would overflow");
+                }
+                balance = current + delta;
+                // seq is taken under the stripe lock so a flush cut sees every record up to lastSeq
+                durable = journal.append(lastSeq.incrementAndGet(), accountNumber, delta);
+                stripe.balances.put(accountNumber, balance);
+                stripe.deltas.addTo(accountNumber, delta);
+                break;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            failed = true;
+            throw new LedgerUnavailableException("journal write failed", e.getCause());
+        }
+        return new LedgerBalance(accountNumber, balance);
+    }
+
+    /**
+     * Forgets the balances of accounts whose row was written past the ledger;
+     * their next adjustment loads them again. Call once the write has
+     * committed.
+     */
+    public void balancesWritten(Collection<Long> accountNumbers) {
+        for (Long accountNumber : accountNumbers) {
+            Stripe stripe = stripes[index(accountNumber)];
+            stripe.lock.lock();
+            try {
+                stripe.writes++;
+                stripe.balances.remove(accountNumber);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending deltas to the database. Runs on the flush thread and
+     * on shutdown; one flush at a time.
+     */
+    synchronized void flush() throws IOException {
+        if (failed) {
+            // memory may hold adjustments that never became durable; the journal is the truth now
+            return;
+        }
+        LongLongHashMap[] cut = new LongLongHashMap[stripes.length];
+        long cutSeq;
+        CompletableFuture<Void> rolled;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            cutSeq = lastSeq.get();
+            if (cutSeq == flushedSeq) {
+                return;
+            }
+            for (int i = 0; i < stripes.length; i++) {
+                cut[i] = stripes[i].deltas;
+                stripes[i].deltas = new LongLongHashMap();
+            }
+            flushing = cut;
+            rolled = journal.roll(cutSeq + 1);
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlock();
+            }
+        }
+
+        persisting.writeLock().lock();
+        try {
+            persist(cut, cutSeq);
+        } catch (RuntimeException e) {
+            // put the deltas back, the next flush retries them
+            for (int i = 0; i < stripes.length; i++) {
+                Stripe stripe = stripes[i];
+                stripe.lock.lock();
+                try {
+                    cut[i].forEach(stripe.deltas::addTo);
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            throw e;
+        } finally {
+            flushing = null;
+            persisting.writeLock().unlock();
+        }
+        flushedSeq = cutSeq;
+        rolled.join();
+        journal.deleteSegmentsBefore(cutSeq + 1);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.warn("ledger flush failed, retrying next interval", e);
+        }
+    }
+
+    private void persist(LongLongHashMap[] deltas, long seq) {
+        List<Object[]> rows = new ArrayList<>();
+        for (LongLongHashMap map : deltas) {
+            map.forEach((accountNumber, delta) -> {
+                if (delta != 0) {
+                    rows.add(new Object[] { delta, accountNumber, delta });
+                }
+            });
+        }
+        new TransactionTemplate(transactionManager).execute(status -> {
+            if (!rows.isEmpty()) {
+                int[] counts = jdbcTemplate.batchUpdate(APPLY_SQL, rows);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        log.warn("ledger: account {} no longer exists or cannot cover it, dropping delta {}",
+                                rows.get(i)[1], rows.get(i)[0]);
+                    }
+                }
+            }
+            jdbcTemplate.update(CHECKPOINT_SQL, seq, LedgerCheckpoint.ID);
+            return null;
+        });
+        List<Long> accountNumbers = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            accountNumbers.add((Long) row[1]);
+        }
+        // not accountsChanged, which would drop the balances the ledger just wrote
+        owners.evict(owners.of(accountNumbers));
+    }
+
+    private int index(long accountNumber) {
+        return LongLongHashMap.mix(accountNumber) & (stripes.length - 1);
+    }
+
+    // the stored balance plus the deltas not yet in it: pending ones and those of a cut being written
+    private void load(int index, Long accountNumber) {
+        Stripe stripe = stripes[index];
+        long writes;
+        stripe.lock.lock();
+        try {
+            if (stripe.balances.containsKey(accountNumber)) {
+                return;
+            }
+            writes = stripe.writes;
+        } finally {
+            stripe.lock.unlock();
+        }
+        persisting.readLock().lock();
+        try {
+            long stored = stored(accountNumber);
+            stripe.lock.lock();
+            try {
+                // a direct write reported since the read may not be in it, the caller loads again
+                if (stripe.writes == writes && !stripe.balances.containsKey(accountNumber)) {
+                    long unflushed = stripe.deltas.get(accountNumber, 0)
+                            + (flushing == null ? 0 : flushing[index].get(accountNumber, 0));
+                    stripe.balances.put(accountNumber, stored + unflushed);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        } finally {
+            persisting.readLock().unlock();
+        }
+    }
+
+    private long stored(Long accountNumber) {
+        Long stored = jdbcTemplate.query("select balance_minor from account where account_number = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, accountNumber);
+        if (stored == null) {
+            throw new AccountNotFoundException(accountNumber);
+        }
+        return stored;
+    }
+
+    private static long toDelta(BigDecimal amount) {
+        if (amount == null || amount.signum() == 0) {
+            throw new InvalidAdjustmentException("amount must be non-zero");
+        }
+        try {
+            return Money.toMinor(amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidAdjustmentException("amount has more than " + Money.SCALE + " decimals");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.crud.ledger;
+
+import com.crud.Money;
+
+/**
+ * Balance of an account after an adjustment, as held by the ledger.
+ */
+public class LedgerBalance {
+
+    private final Long accountNumber;
+    private final long balanceMinor;
+
+    LedgerBalance(Long accountNumber, long balanceMinor) {
+        this.accountNumber = accountNumber;
+        this.balanceMinor = balanceMinor;
+    }
+
+    public Long getAccountNumber() {
+        return accountNumber;
+    }
+
+    public Double getAccountBalance() {
+        return Money.toMajor(balanceMinor);
+    }
+}
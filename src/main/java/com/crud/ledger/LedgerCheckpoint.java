@@ -0,0 +1,30 @@
+package com.crud.ledger;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Single row recording the last journal sequence number whose delta is in
+ * the {@code account} table. It is updated in the same transaction as the
+ * balances, so a replayed journal never applies a delta twice.
+ */
+@Entity
+@Table(name = "ledger_checkpoint")
+public class LedgerCheckpoint {
+
+    static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    private long appliedSeq;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+}
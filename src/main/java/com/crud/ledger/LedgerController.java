@@ -0,0 +1,26 @@
+package com.crud.ledger;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnProperty(name = "crud.ledger.enabled", havingValue = "true")
+public class LedgerController {
+
+    @Autowired
+    private Ledger ledger;
+
+    // Add {"amount": <decimal>} to the balance in memory, answered once journaled; the row follows on the next flush
+    @PostMapping("/accounts/{accountNumber}/adjustments")
+    LedgerBalance adjust(@PathVariable Long accountNumber, @RequestBody Map<String, BigDecimal> adjustment) {
+        return ledger.adjust(accountNumber, adjustment.get("amount"));
+    }
+
+}
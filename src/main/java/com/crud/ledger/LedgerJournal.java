@@ -0,0 +1,262 @@
+package com.crud.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only, fsynced log of ledger adjustments.
+ * <p>
+ * Records are fixed size: {@code seq, accountNumber, deltaMinor} followed by
+ * a CRC32 of those 24 bytes. One writer thread drains whatever is queued,
+ * writes it with a single {@code write} and a single {@code force}, then
+ * completes every appender's future (group commit), so an adjustment is
+ * acknowledged only once it is on disk. The log is split into segments named
+ * after the first sequence number they may hold; {@link #roll} starts a new
+ * segment so segments covered by a database checkpoint can be deleted.
+ */
+final class LedgerJournal implements Closeable {
+
+    interface Replay {
+        void record(long seq, long accountNumber, long deltaMinor);
+    }
+
+    static final int RECORD_BYTES = 28;
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private static final class Entry {
+        final long seq;
+        final long accountNumber;
+        final long deltaMinor;
+        final boolean roll;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(long seq, long accountNumber, long deltaMinor, boolean roll) {
+            this.seq = seq;
+            this.accountNumber = accountNumber;
+            this.deltaMinor = deltaMinor;
+            this.roll = roll;
+        }
+    }
+
+    private final Path dir;
+    private final int groupCommitMax;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer buffer;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    private FileChannel channel;
+
+    /**
+     * Opens a new segment starting at {@code nextSeq} and starts the writer thread.
+     */
+    LedgerJournal(Path dir, long nextSeq, int groupCommitMax) throws IOException {
+        this.dir = dir;
+        this.groupCommitMax = groupCommitMax;
+        this.buffer = ByteBuffer.allocateDirect(groupCommitMax * RECORD_BYTES);
+        this.channel = openSegment(nextSeq);
+        this.writer = new Thread(this::writeLoop, "ledger-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Feeds every intact record with a sequence number above {@code afterSeq}
+     * to {@code replay}. A torn or corrupt record ends its segment: it was
+     * never fsynced, so it was never acknowledged.
+     *
+     * @return the highest sequence number seen, at least {@code afterSeq}
+     */
+    static long replay(Path dir, long afterSeq, Replay replay) throws IOException {
+        long last = afterSeq;
+        CRC32 crc = new CRC32();
+        for (Path segment : segments(dir).values()) {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (records.remaining() >= RECORD_BYTES) {
+                int start = records.position();
+                long seq = records.getLong();
+                long accountNumber = records.getLong();
+                long deltaMinor = records.getLong();
+                int checksum = records.getInt();
+                if (checksum != checksum(crc, records, start)) {
+                    log.warn("ledger journal {}: corrupt record at offset {}, ignoring the rest of the segment",
+                            segment.getFileName(), start);
+                    break;
+                }
+                if (seq > afterSeq) {
+                    replay.record(seq, accountNumber, deltaMinor);
+                    last = Math.max(last, seq);
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Queues a record; the future completes once it is durable.
+     */
+    CompletableFuture<Void> append(long seq, long accountNumber, long deltaMinor) {
+        return enqueue(new Entry(seq, accountNumber, deltaMinor, false));
+    }
+
+    /**
+     * Starts a new segment for records from {@code nextSeq} on, after every
+     * record queued so far; the future completes once the switch is made.
+     */
+    CompletableFuture<Void> roll(long nextSeq) {
+        return enqueue(new Entry(nextSeq, 0, 0, true));
+    }
+
+    /**
+     * Deletes the segments that precede the one starting at {@code seq}.
+     */
+    void deleteSegmentsBefore(long seq) throws IOException {
+        for (Path segment : segments(dir).headMap(seq).values()) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Writes what is queued and stops the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // appends that raced with close
+        Entry left;
+        while ((left = queue.poll()) != null) {
+            left.done.completeExceptionally(new IOException("ledger journal is closed"));
+        }
+        channel.close();
+    }
+
+    private CompletableFuture<Void> enqueue(Entry entry) {
+        IOException failed = failure;
+        if (failed != null || !running) {
+            entry.done.completeExceptionally(failed != null ? failed : new IOException("ledger journal is closed"));
+        } else {
+            queue.add(entry);
+        }
+        return entry.done;
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(groupCommitMax);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, groupCommitMax - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("ledger journal write failed, no further adjustments are accepted", e);
+                failure = e;
+                for (Entry entry : batch) {
+                    entry.done.completeExceptionally(e);
+                }
+                Entry left;
+                while ((left = queue.poll()) != null) {
+                    left.done.completeExceptionally(e);
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) throws IOException {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            if (entry.roll) {
+                sync(batch, from, i);
+                channel.close();
+                channel = openSegment(entry.seq);
+                entry.done.complete(null);
+                from = i + 1;
+            } else {
+                int start = buffer.position();
+                buffer.putLong(entry.seq).putLong(entry.accountNumber).putLong(entry.deltaMinor);
+                buffer.putInt(checksum(crc, buffer, start));
+            }
+        }
+        sync(batch, from, batch.size());
+    }
+
+    private void sync(List<Entry> batch, int from, int to) throws IOException {
+        if (from == to) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        channel.force(false);
+        for (int i = from; i < to; i++) {
+            batch.get(i).done.complete(null);
+        }
+    }
+
+    private FileChannel openSegment(long firstSeq) throws IOException {
+        Path segment = dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static int checksum(CRC32 crc, ByteBuffer record, int start) {
+        ByteBuffer fields = record.duplicate();
+        fields.position(start);
+        fields.limit(start + RECORD_BYTES - 4);
+        crc.reset();
+        crc.update(fields);
+        return (int) crc.getValue();
+    }
+
+    // first sequence number -> segment file
+    private static TreeMap<Long, Path> segments(Path dir) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,129 @@
+package com.crud.ledger;
+
+/**
+ * Open-addressing {@code long -> long} hash map with linear probing. Keys and
+ * values live in primitive arrays, so a lookup or update allocates nothing.
+ * Not thread safe; the ledger guards each instance with its stripe lock.
+ */
+final class LongLongHashMap {
+
+    interface Visitor {
+        void visit(long key, long value);
+    }
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    LongLongHashMap() {
+        this(16);
+    }
+
+    LongLongHashMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1);
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    boolean containsKey(long key) {
+        return used[slot(key)];
+    }
+
+    long get(long key, long missing) {
+        int slot = slot(key);
+        return used[slot] ? values[slot] : missing;
+    }
+
+    void put(long key, long value) {
+        int slot = slot(key);
+        if (!used[slot]) {
+            insert(slot, key, value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    void addTo(long key, long delta) {
+        int slot = slot(key);
+        if (!used[slot]) {
+            insert(slot, key, delta);
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    void remove(long key) {
+        int hole = slot(key);
+        if (!used[hole]) {
+            return;
+        }
+        // shift the rest of the probe run back so no lookup stops early at the hole
+        for (int i = (hole + 1) & mask; used[i]; i = (i + 1) & mask) {
+            int home = mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int slot(long key) {
+        int i = mix(key) & mask;
+        while (used[i] && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insert(int slot, long key, long value) {
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        // keep the table at most half full so probe runs stay short
+        if (++size * 2 > keys.length) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            allocate(keys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int s = slot(oldKeys[i]);
+                    keys[s] = oldKeys[i];
+                    values[s] = oldValues[i];
+                    used[s] = true;
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+}
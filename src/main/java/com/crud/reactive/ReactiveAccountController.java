@@ -0,0 +1,76 @@
+package com.crud.reactive;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.crud.Account;
+import com.crud.AccountController;
+import com.crud.error.AccountNotFoundException;
+import com.crud.error.AccountUnSupportedFieldPatchException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@Profile("reactive")
+public class ReactiveAccountController {
+
+    @Autowired
+    private ReactiveAccountRepository repository;
+
+    // Find, streamed as rows arrive; ask for application/x-ndjson to get one account per line
+    @GetMapping(value = "/accounts", produces = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson",
+            MediaType.APPLICATION_STREAM_JSON_VALUE })
+    Flux<Account> findAll() {
+        return repository.findAll();
+    }
+
+    // Save
+    @PostMapping("/accounts")
+    @ResponseStatus(HttpStatus.CREATED)
+    Mono<Account> newAccount(@RequestBody Account newAccount) {
+        return repository.insert(newAccount);
+    }
+
+    // Find
+    @GetMapping("/accounts/{accountNumber}")
+    Mono<Account> findOne(@PathVariable Long accountNumber) {
+        return repository.findById(accountNumber)
+                .switchIfEmpty(Mono.error(() -> new AccountNotFoundException(accountNumber)));
+    }
+
+    // Save or update
+    @PutMapping("/accounts/{accountNumber}")
+    Mono<Account> saveOrUpdate(@RequestBody Account newAccount, @PathVariable Long accountNumber) {
+        newAccount.setAccountNumber(accountNumber);
+        return repository.upsert(newAccount).thenReturn(newAccount);
+    }
+
+    // JSON Merge Patch: one UPDATE of just the fields in the body
+    @PatchMapping(value = "/accounts/{accountNumber}", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    Mono<Void> patch(@RequestBody Map<String, Object> update, @PathVariable Long accountNumber) {
+        return Mono.fromCallable(() -> AccountController.PATCHABLE.resolve(update, AccountUnSupportedFieldPatchException::new))
+                .flatMap(changes -> repository.patch(accountNumber, changes))
+                .flatMap(found -> found == 0 ? Mono.error(new AccountNotFoundException(accountNumber)) : Mono.empty());
+    }
+
+    @DeleteMapping("/accounts/{accountNumber}")
+    Mono<Void> deleteAccount(@PathVariable Long accountNumber) {
+        return repository.deleteById(accountNumber).then();
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.crud.reactive;
+
+import static com.crud.reactive.ReactiveDb.nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.crud.Account;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public class ReactiveAccountRepository {
+
+    @Autowired
+    private ReactiveDb db;
+
+    public Flux<Account> findAll() {
+        return db.query("select account_number, balance_minor from account order by account_number",
+                row -> account(row, 0));
+    }
+
+    public Mono<Account> findById(Long accountNumber) {
+        return db.query("select account_number, balance_minor from account where account_number = $1",
+                row -> account(row, 0), accountNumber).next();
+    }
+
+    public Mono<Account> insert(Account account) {
+        Long userId = account.getUser() == null ? null : account.getUser().getUserId();
+        return db.update("insert into account (account_number, balance_minor, user_id, version) values ($1, $2, $3, 0)",
+                account.getAccountNumber(), account.getBalanceMinor(), nullable(userId, Long.class))
+                .thenReturn(account);
+    }
+
+    static final String UPSERT = ReactiveDb.merge("account", "account_number",
+            Arrays.asList("account_number", "balance_minor"), "version");
+
+    static final String UPSERT_OWNED = ReactiveDb.merge("account", "account_number",
+            Arrays.asList("account_number", "balance_minor", "user_id"), "version");
+
+    // like the MVC upsert: one statement, the owner is left alone and the version moves on every write
+    public Mono<Integer> upsert(Account account) {
+        return db.update(UPSERT, account.getAccountNumber(), account.getBalanceMinor());
+    }
+
+    public Mono<Integer> patch(Long accountNumber, Map<String, Object> changes) {
+        return ReactivePatch.update(db, Account.class, "account", "account_number", "version", accountNumber, changes);
+    }
+
+    public Mono<Integer> deleteById(Long accountNumber) {
+        return db.update("delete from account where account_number = $1", accountNumber);
+    }
+
+    static Account account(Row row, int from) {
+        Account account = new Account();
+        account.setAccountNumber(row.get(from, Long.class));
+        account.setBalanceMinor(row.get(from + 1, Long.class));
+        return account;
+    }
+}
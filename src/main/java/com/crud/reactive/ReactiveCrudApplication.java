@@ -0,0 +1,39 @@
+package com.crud.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+
+/**
+ * Non-blocking implementation of the {@code /users} and {@code /accounts}
+ * contract: WebFlux on Netty over R2DBC, started instead of
+ * {@link com.crud.MicroserviceCrudApplication} with the "reactive" profile.
+ * Only this package is scanned and the JDBC/JPA auto-configuration is
+ * switched off, so the two stacks share the entity classes and nothing else.
+ */
+@Profile("reactive")
+@SpringBootApplication(excludeName = {
+        "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+        "org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration",
+        "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration" })
+public class ReactiveCrudApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveCrudApplication.class)
+                .profiles("reactive")
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+
+    @Bean
+    ConnectionFactory connectionFactory(@Value("${crud.reactive.r2dbc-url}") String url) {
+        return ConnectionFactories.get(url);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.crud.reactive;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Thin helpers over the R2DBC SPI. Statements use {@code $1, $2, ...}
+ * placeholders; a {@link Class} argument binds a null of that type (see
+ * {@link #nullable}).
+ */
+@Component
+@Profile("reactive")
+public class ReactiveDb {
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Value("classpath:reactive-schema.sql")
+    private Resource schema;
+
+    // runs once on the startup thread, before the server accepts requests
+    @PostConstruct
+    void createSchema() throws IOException {
+        String sql = StreamUtils.copyToString(schema.getInputStream(), StandardCharsets.UTF_8);
+        Flux.fromArray(sql.split(";"))
+                .map(String::trim)
+                .filter(statement -> !statement.isEmpty())
+                .concatMap(this::update)
+                .then()
+                .block();
+    }
+
+    /**
+     * H2 {@code MERGE ... USING} as {@code Upserter} writes it: one statement
+     * that inserts the row with {@code version} 0 or updates it and
+     * increments {@code version}. Binds one value per column, in order.
+     */
+    public static String merge(String table, String key, List<String> columns, String version) {
+        return "merge into " + table + " t using (select "
+                + IntStream.range(0, columns.size()).mapToObj(i -> "$" + (i + 1) + " " + columns.get(i))
+                        .collect(Collectors.joining(", ")) + ") s"
+                + " on (t." + key + " = s." + key + ")"
+                + " when matched then update set " + columns.stream().filter(c -> !c.equals(key))
+                        .map(c -> "t." + c + " = s." + c).collect(Collectors.joining(", "))
+                + ", t." + version + " = t." + version + " + 1"
+                + " when not matched then insert (" + String.join(", ", columns) + ", " + version + ")"
+                + " values (" + columns.stream().map(c -> "s." + c).collect(Collectors.joining(", ")) + ", 0)";
+    }
+
+    public static Object nullable(Object value, Class<?> type) {
+        return value != null ? value : type;
+    }
+
+    public <T> Flux<T> query(String sql, Function<Row, T> mapper, Object... args) {
+        return Flux.usingWhen(connectionFactory.create(), c -> query(c, sql, mapper, args), Connection::close);
+    }
+
+    public Mono<Integer> update(String sql, Object... args) {
+        return Mono.usingWhen(connectionFactory.create(), c -> update(c, sql, args), Connection::close);
+    }
+
+    /**
+     * Runs {@code work} on one connection in a transaction, committed when
+     * {@code work} completes and rolled back when it fails.
+     */
+    public <T> Flux<T> inTransaction(Function<Connection, Publisher<T>> work) {
+        return Flux.usingWhen(connectionFactory.create(),
+                c -> Mono.from(c.beginTransaction())
+                        .thenMany(work.apply(c))
+                        .concatWith(Mono.from(c.commitTransaction()).then(Mono.<T>empty()))
+                        .onErrorResume(e -> Mono.from(c.rollbackTransaction()).then(Mono.<T>error(e))),
+                Connection::close);
+    }
+
+    public static <T> Flux<T> query(Connection connection, String sql, Function<Row, T> mapper, Object... args) {
+        return Flux.from(bind(connection.createStatement(sql), args).execute())
+                .concatMap(result -> result.map((row, metadata) -> mapper.apply(row)));
+    }
+
+    public static Mono<Integer> update(Connection connection, String sql, Object... args) {
+        return Flux.from(bind(connection.createStatement(sql), args).execute())
+                .concatMap(result -> Flux.from(result.getRowsUpdated()).map(Number::intValue))
+                .reduce(0, Integer::sum);
+    }
+
+    private static Statement bind(Statement statement, Object... args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Class) {
+                statement.bindNull(i, (Class<?>) args[i]);
+            } else {
+                statement.bind(i, args[i]);
+            }
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,34 @@
+package com.crud.reactive;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.crud.error.AccountNotFoundException;
+import com.crud.error.AccountUnSupportedFieldPatchException;
+import com.crud.error.UserNotFoundException;
+import com.crud.error.UserUnSupportedFieldPatchException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Same statuses as {@code CustomGlobalExceptionHandler}; the error body
+ * (status, error, message, path) is rendered by Boot's WebFlux error handler.
+ */
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler({ UserNotFoundException.class, AccountNotFoundException.class })
+    public Mono<Void> handleNotFound(RuntimeException e) {
+        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e));
+    }
+
+    @ExceptionHandler({ UserUnSupportedFieldPatchException.class, AccountUnSupportedFieldPatchException.class })
+    public Mono<Void> handleUnSupportedFieldPatch(RuntimeException e) {
+        return Mono.error(new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED, e.getMessage(), e));
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.crud.reactive;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * SQL counterpart of {@code FieldMaskUpdates} for the reactive repositories:
+ * applies {@link com.crud.FieldMask} output (entity attribute names) as one
+ * UPDATE of the matching snake_case columns.
+ */
+final class ReactivePatch {
+
+    private ReactivePatch() {
+    }
+
+    /**
+     * @return 1 if the row exists, 0 if it does not
+     */
+    static Mono<Integer> update(ReactiveDb db, Class<?> entity, String table, String idColumn, String versionColumn,
+            Object id, Map<String, Object> changes) {
+        if (changes.isEmpty()) {
+            return db.query("select count(*) from " + table + " where " + idColumn + " = $1",
+                    row -> row.get(0, Long.class).intValue(), id).next();
+        }
+        StringBuilder set = new StringBuilder();
+        Object[] args = new Object[changes.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            set.append(i == 0 ? "" : ", ").append(column(change.getKey())).append(" = $").append(i + 1);
+            // merge patch null clears the column, bound as a null of the attribute's own type
+            args[i++] = change.getValue() != null ? change.getValue() : type(entity, change.getKey());
+        }
+        if (versionColumn != null) {
+            set.append(", ").append(versionColumn).append(" = ").append(versionColumn).append(" + 1");
+        }
+        args[i] = id;
+        return db.update("update " + table + " set " + set + " where " + idColumn + " = $" + (i + 1), args);
+    }
+
+    static Class<?> type(Class<?> entity, String attribute) {
+        Field field = ReflectionUtils.findField(entity, attribute);
+        if (field == null) {
+            throw new IllegalArgumentException(entity.getSimpleName() + " has no attribute " + attribute);
+        }
+        return ClassUtils.resolvePrimitiveIfNecessary(field.getType());
+    }
+
+    // phoneNumber -> phone_number, addressLine1 -> address_line1, as Spring's physical naming strategy does
+    static String column(String attribute) {
+        return attribute.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
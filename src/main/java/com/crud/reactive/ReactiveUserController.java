@@ -0,0 +1,76 @@
+package com.crud.reactive;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.crud.User;
+import com.crud.UserController;
+import com.crud.error.UserNotFoundException;
+import com.crud.error.UserUnSupportedFieldPatchException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@Profile("reactive")
+public class ReactiveUserController {
+
+    @Autowired
+    private ReactiveUserRepository repository;
+
+    // Find, streamed as rows arrive; ask for application/x-ndjson to get one user per line
+    @GetMapping(value = "/users", produces = { MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson",
+            MediaType.APPLICATION_STREAM_JSON_VALUE })
+    Flux<User> findAll() {
+        return repository.findAll();
+    }
+
+    // Save
+    @PostMapping("/users")
+    @ResponseStatus(HttpStatus.CREATED)
+    Mono<User> newUser(@RequestBody User newUser) {
+        return repository.insert(newUser);
+    }
+
+    // Find
+    @GetMapping("/users/{userId}")
+    Mono<User> findOne(@PathVariable Long userId) {
+        return repository.findById(userId)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException(userId)));
+    }
+
+    // Save or update: one upsert statement for the user and one per account it carries, in a transaction
+    @PutMapping("/users/{userId}")
+    Mono<User> saveOrUpdate(@RequestBody User newUser, @PathVariable Long userId) {
+        newUser.setUserId(userId);
+        return repository.upsert(newUser).thenReturn(newUser);
+    }
+
+    // JSON Merge Patch: one UPDATE of just the fields in the body, null clears a field
+    @PatchMapping(value = "/users/{userId}", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    Mono<Void> patch(@RequestBody Map<String, Object> update, @PathVariable Long userId) {
+        return Mono.fromCallable(() -> UserController.PATCHABLE.resolve(update, UserUnSupportedFieldPatchException::new))
+                .flatMap(changes -> repository.patch(userId, changes))
+                .flatMap(found -> found == 0 ? Mono.error(new UserNotFoundException(userId)) : Mono.empty());
+    }
+
+    @DeleteMapping("/users/{userId}")
+    Mono<Void> deleteUser(@PathVariable Long userId) {
+        return repository.deleteById(userId);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.crud.reactive;
+
+import static com.crud.reactive.ReactiveDb.nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.crud.Account;
+import com.crud.User;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public class ReactiveUserRepository {
+
+    private static final String COLUMNS = "u.user_id, u.first_name, u.last_name, u.email, u.phone_number,"
+            + " u.address_line1, u.address_line2";
+
+    private static final String UPSERT = ReactiveDb.merge("user", "user_id", Arrays.asList("user_id", "first_name",
+            "last_name", "email", "phone_number", "address_line1", "address_line2"), "version");
+
+    @Autowired
+    private ReactiveDb db;
+
+    // one left join, grouped per user as the rows stream in
+    public Flux<User> findAll() {
+        return db.query("select " + COLUMNS + ", a.account_number, a.balance_minor from user u"
+                + " left join account a on a.user_id = u.user_id order by u.user_id, a.account_number",
+                ReactiveUserRepository::userAndAccount)
+                .bufferUntilChanged(row -> ((User) row[0]).getUserId())
+                .map(rows -> {
+                    User user = (User) rows.get(0)[0];
+                    List<Account> accounts = new ArrayList<>();
+                    for (Object[] row : rows) {
+                        if (row[1] != null) {
+                            accounts.add((Account) row[1]);
+                        }
+                    }
+                    user.setAccount(accounts);
+                    return user;
+                });
+    }
+
+    // the user and its accounts are read concurrently
+    public Mono<User> findById(Long userId) {
+        Mono<User> user = db.query("select " + COLUMNS + " from user u where u.user_id = $1", ReactiveUserRepository::user,
+                userId).next();
+        Mono<List<Account>> accounts = db.query("select account_number, balance_minor from account where user_id = $1"
+                + " order by account_number", row -> ReactiveAccountRepository.account(row, 0), userId).collectList();
+        return Mono.zip(user, accounts, (found, owned) -> {
+            found.setAccount(owned);
+            return found;
+        });
+    }
+
+    public Mono<User> insert(User user) {
+        List<Account> accounts = user.getAccount() == null ? new ArrayList<>() : user.getAccount();
+        return db.inTransaction(c -> ReactiveDb.update(c, "insert into user (user_id, first_name, last_name, email,"
+                + " phone_number, address_line1, address_line2) values ($1, $2, $3, $4, $5, $6, $7)", values(user))
+                .thenMany(Flux.fromIterable(accounts)
+                        .concatMap(account -> ReactiveDb.update(c, "insert into account (account_number, balance_minor,"
+                                + " user_id, version) values ($1, $2, $3, 0)", account.getAccountNumber(),
+                                account.getBalanceMinor(), user.getUserId()))))
+                .then(Mono.just(user));
+    }
+
+    // like the MVC upsert: the user and the accounts it carries in one transaction, versions moving on update
+    public Mono<Integer> upsert(User user) {
+        List<Account> accounts = user.getAccount() == null ? new ArrayList<>() : user.getAccount();
+        return db.inTransaction(c -> ReactiveDb.update(c, UPSERT, values(user))
+                .flatMap(updated -> Flux.fromIterable(accounts)
+                        .concatMap(account -> ReactiveDb.update(c, ReactiveAccountRepository.UPSERT_OWNED,
+                                account.getAccountNumber(), account.getBalanceMinor(), user.getUserId()))
+                        .then(Mono.just(updated))))
+                .next();
+    }
+
+    /**
+     * @return 1 if the user exists, 0 if not
+     */
+    public Mono<Integer> patch(Long userId, Map<String, Object> changes) {
+        return ReactivePatch.update(db, User.class, "user", "user_id", "version", userId, changes);
+    }
+
+    public Mono<Void> deleteById(Long userId) {
+        return db.inTransaction(c -> ReactiveDb.update(c, "delete from account where user_id = $1", userId)
+                .then(ReactiveDb.update(c, "delete from user where user_id = $1", userId)))
+                .then();
+    }
+
+    private static Object[] values(User user) {
+        return new Object[] { user.getUserId(), nullable(user.getFirstName(), String.class),
+                nullable(user.getLastName(), String.class), nullable(user.getEmail(), String.class),
+                nullable(user.getPhoneNumber(), Long.class), nullable(user.getAddressLine1(), String.class),
+                nullable(user.getAddressLine2(), String.class) };
+    }
+
+    // [user, account or null]
+    private static Object[] userAndAccount(Row row) {
+        return new Object[] { user(row), row.get(7, Long.class) == null ? null : ReactiveAccountRepository.account(row, 7) };
+    }
+
+    private static User user(Row row) {
+        return new User(row.get(0, Long.class), row.get(1, String.class), row.get(2, String.class),
+                row.get(3, String.class), row.get(4, Long.class), row.get(5, String.class), row.get(6, String.class));
+    }
+}
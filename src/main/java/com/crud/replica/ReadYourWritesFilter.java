@@ -0,0 +1,69 @@
+package com.crud.replica;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Sends a client's reads to the primary for {@code sticky-window-ms} after
+ * it last wrote, so it sees its own writes however far the replicas lag.
+ * <p>
+ * A client is the value of the {@code crud.replicas.client-header} header,
+ * or its remote address without one. Writes themselves are pinned too: a
+ * read-only lookup made while handling a write must not see an older row
+ * than the write is about to change. The window is recorded when the write
+ * finishes, so it covers the replication that starts after the commit.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final String clientHeader;
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(String clientHeader, long stickyWindowMillis, long maxClients) {
+        this.clientHeader = clientHeader;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindowMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maxClients)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientOf(request);
+        boolean write = isWrite(request.getMethod());
+        if (!write && recentWriters.getIfPresent(client) == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean wasPinned = ReplicaContext.pinPrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaContext.restore(wasPinned);
+            if (write) {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String client = request.getHeader(clientHeader);
+        return client == null || client.isEmpty() ? request.getRemoteAddr() : client;
+    }
+
+    private static boolean isWrite(String method) {
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.crud.replica;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One read replica: its data source, the connections currently taken from
+ * it and whether it may be used. A replica that fails to hand out a
+ * connection or a health check is left out for {@code retryAfterMillis}, or
+ * until a health check passes.
+ */
+public class Replica {
+
+    private static final Logger log = LoggerFactory.getLogger(Replica.class);
+
+    private final String name;
+    private final DataSource dataSource;
+    private final long retryAfterMillis;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long downUntil;
+
+    public Replica(String name, DataSource dataSource, long retryAfterMillis) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public boolean isHealthy() {
+        return System.currentTimeMillis() >= downUntil;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public void markDown(Exception cause) {
+        failures.incrementAndGet();
+        if (isHealthy()) {
+            log.warn("replica {} unavailable, reads go elsewhere for {} ms: {}", name, retryAfterMillis,
+                    cause.toString());
+        }
+        downUntil = System.currentTimeMillis() + retryAfterMillis;
+    }
+
+    public void markUp() {
+        if (!isHealthy()) {
+            log.info("replica {} healthy again", name);
+        }
+        downUntil = 0;
+    }
+
+    /**
+     * A connection that counts as outstanding on this replica until closed.
+     */
+    public Connection getConnection() throws SQLException {
+        outstanding.incrementAndGet();
+        try {
+            Connection target = dataSource.getConnection();
+            reads.incrementAndGet();
+            return tracked(target);
+        } catch (SQLException | RuntimeException e) {
+            outstanding.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("healthy", isHealthy());
+        result.put("outstanding", outstanding.get());
+        result.put("reads", reads.get());
+        result.put("failures", failures.get());
+        return result;
+    }
+
+    private Connection tracked(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                outstanding.decrementAndGet();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.crud.replica;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How a read-only transaction picks among the healthy replicas.
+ */
+public enum ReplicaBalancer {
+
+    // each in turn
+    ROUND_ROBIN {
+        @Override
+        Replica pick(List<Replica> replicas, int start) {
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.isHealthy()) {
+                    return replica;
+                }
+            }
+            return null;
+        }
+    },
+
+    // the one with the fewest connections taken, ties going round robin
+    LEAST_OUTSTANDING {
+        @Override
+        Replica pick(List<Replica> replicas, int start) {
+            Replica best = null;
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.isHealthy() && (best == null || replica.getOutstanding() < best.getOutstanding())) {
+                    best = replica;
+                }
+            }
+            return best;
+        }
+    };
+
+    /**
+     * @param start a rotating, non-negative offset
+     * @return a healthy replica, or null when there is none
+     */
+    abstract Replica pick(List<Replica> replicas, int start);
+
+    // round-robin, least-outstanding
+    public static ReplicaBalancer of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.crud.replica;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.StringUtils;
+
+import com.crud.PoolMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Read replicas for read-only transactions, enabled with
+ * {@code crud.replicas.enabled=true}.
+ * <p>
+ * The application data source becomes a {@link ReplicaRoutingDataSource}
+ * behind a {@link LazyConnectionDataSourceProxy}, so that the connection is
+ * fetched after the transaction manager has marked the transaction
+ * read-only. Every {@code @Transactional(readOnly = true)} unit of work,
+ * which includes the plain repository reads, goes to a replica;
+ * everything else stays on the primary. The replicas are
+ * {@code crud.replicas.urls}, or without any {@code crud.replicas.count}
+ * local H2 databases kept up to date by {@link SimulatedReplication} every
+ * {@code crud.replicas.simulated-lag-ms}. The primary and every replica
+ * pool are metered with {@link PoolMetrics}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crud.replicas.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaConfig.class);
+
+    @Bean
+    static BeanPostProcessor replicaRoutingDataSource(Environment env, ObjectProvider<MeterRegistry> registry) {
+        if (env.getProperty("crud.shards.enabled", Boolean.class, false)) {
+            // shard routing picks the data source by account, not by transaction
+            throw new IllegalStateException("crud.shards.enabled cannot be combined with crud.replicas.enabled");
+        }
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)
+                        || bean instanceof LazyConnectionDataSourceProxy) {
+                    return bean;
+                }
+                ReplicaBalancer balancer = ReplicaBalancer.of(env.getProperty("crud.replicas.balance", "round-robin"));
+                PoolMetrics.register((DataSource) bean, registry);
+                return new LazyConnectionDataSourceProxy(
+                        new ReplicaRoutingDataSource((DataSource) bean, replicas(env, registry), balancer));
+            }
+        };
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(Environment env) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(env.getProperty("crud.replicas.client-header", "X-Client-Id"),
+                        env.getProperty("crud.replicas.sticky-window-ms", Long.class, 2000L),
+                        env.getProperty("crud.replicas.sticky-max-clients", Long.class, 100000L)));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    static boolean isSimulated(Environment env) {
+        return !StringUtils.hasText(env.getProperty("crud.replicas.urls"));
+    }
+
+    private static List<Replica> replicas(Environment env, ObjectProvider<MeterRegistry> registry) {
+        List<String> urls = new ArrayList<>();
+        if (isSimulated(env)) {
+            int count = env.getProperty("crud.replicas.count", Integer.class, 2);
+            for (int i = 1; i <= count; i++) {
+                urls.add(String.format("jdbc:h2:mem:replica-%d", i));
+            }
+        } else {
+            urls.addAll(StringUtils.commaDelimitedListToSet(env.getProperty("crud.replicas.urls")));
+        }
+        int poolSize = env.getProperty("crud.replicas.pool-size", Integer.class, 10);
+        long connectTimeout = env.getProperty("crud.replicas.connect-timeout-ms", Long.class, 250L);
+        long retryAfter = env.getProperty("crud.replicas.retry-after-ms", Long.class, 5000L);
+
+        List<Replica> replicas = new ArrayList<>();
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("replica-schema.sql"));
+        for (String url : urls) {
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(env.getProperty("crud.replicas.username", "sa"))
+                    .password(env.getProperty("crud.replicas.password", ""))
+                    .build();
+            dataSource.setPoolName(name);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setConnectionTimeout(connectTimeout);
+            PoolMetrics.register(dataSource, registry);
+            if (isSimulated(env)) {
+                // written by the simulated replication, so not a read-only pool
+                DatabasePopulatorUtils.execute(schema, dataSource);
+            } else {
+                dataSource.setReadOnly(true);
+                // a replica that is down at startup is skipped until a health check passes
+                dataSource.setInitializationFailTimeout(-1);
+            }
+            replicas.add(new Replica(name, dataSource, retryAfter));
+        }
+        log.info("read-only transactions routed over {} replicas{}", replicas.size(),
+                isSimulated(env) ? " (simulated)" : "");
+        return replicas;
+    }
+
+}
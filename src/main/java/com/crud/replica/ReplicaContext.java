@@ -0,0 +1,33 @@
+package com.crud.replica;
+
+/**
+ * Pins the current thread's read-only transactions to the primary, for a
+ * client that has just written and must read its own writes.
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    public static boolean isPrimaryPinned() {
+        return PRIMARY.get() != null;
+    }
+
+    /**
+     * @return whether the thread was already pinned, to hand to {@link #restore}
+     */
+    public static boolean pinPrimary() {
+        boolean pinned = isPrimaryPinned();
+        PRIMARY.set(Boolean.TRUE);
+        return pinned;
+    }
+
+    public static void restore(boolean wasPinned) {
+        if (!wasPinned) {
+            PRIMARY.remove();
+        }
+    }
+
+}
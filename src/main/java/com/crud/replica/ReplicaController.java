@@ -0,0 +1,23 @@
+package com.crud.replica;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnProperty(name = "crud.replicas.enabled", havingValue = "true")
+public class ReplicaController {
+
+    @Autowired
+    private ReplicaMonitor monitor;
+
+    // Reads served by each replica, its health and open connections, and reads kept on the primary
+    @GetMapping("/replicas")
+    Map<String, Object> replicas() {
+        return monitor.stats();
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.crud.replica;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health checks of the replicas and, for local replicas, the simulated
+ * replication. A replica failing its check is taken out of rotation, one
+ * passing it is put back before its retry delay is up.
+ */
+@Component
+@ConditionalOnProperty(name = "crud.replicas.enabled", havingValue = "true")
+public class ReplicaMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private Environment env;
+
+    @Value("${crud.replicas.health-check-interval-ms:1000}")
+    private long healthCheckIntervalMillis;
+
+    @Value("${crud.replicas.simulated-lag-ms:200}")
+    private long simulatedLagMillis;
+
+    private ReplicaRoutingDataSource router;
+
+    private SimulatedReplication replication;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void init() throws SQLException {
+        router = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        if (ReplicaConfig.isSimulated(env)) {
+            replication = new SimulatedReplication(router.getPrimary());
+            scheduler.scheduleWithFixedDelay(this::replicateQuietly, 0, simulatedLagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // the routing data source stands in for the application bean, whose destroy callback closes only the primary
+    @PreDestroy
+    void shutdown() throws Exception {
+        scheduler.shutdownNow();
+        router.close();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = router.stats();
+        result.put("simulatedLagMs", replication == null ? null : simulatedLagMillis);
+        return result;
+    }
+
+    public void checkHealth() {
+        for (Replica replica : router.getReplicas()) {
+            try (Connection connection = replica.getDataSource().getConnection()) {
+                if (connection.isValid(1)) {
+                    replica.markUp();
+                } else {
+                    replica.markDown(new SQLException("connection validation failed"));
+                }
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    /**
+     * Copies the primary to the local replicas now, without waiting for the
+     * next run. Does nothing for real replicas.
+     */
+    public void replicate() {
+        if (replication != null) {
+            replication.replicate(router.getReplicas());
+        }
+    }
+
+    private void replicateQuietly() {
+        try {
+            replicate();
+        } catch (RuntimeException e) {
+            log.warn("simulated replication failed, replicas keep their previous copy: {}", e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.crud.replica;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out replica connections to read-only transactions and primary
+ * connections to everything else.
+ * <p>
+ * The decision is taken when the connection is fetched, which must be after
+ * the transaction has been marked read-only: this data source is used behind
+ * a {@code LazyConnectionDataSourceProxy}, which fetches the connection on
+ * the first statement. A thread pinned with {@link ReplicaContext}, a replica
+ * that cannot hand out a connection and having no healthy replica at all all
+ * send the read to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaBalancer balancer;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, ReplicaBalancer balancer) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.balancer = balancer;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (ReplicaContext.isPrimaryPinned()) {
+            primaryReads.incrementAndGet();
+            return primary.getConnection();
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = balancer.pick(replicas, next.getAndIncrement() & Integer.MAX_VALUE);
+            if (replica == null) {
+                break;
+            }
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        fallbacks.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    // the replicas have their own credentials, so a connection for given ones is a primary connection
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    // the primary's pool, for the pool metrics and metadata Spring Boot finds by unwrapping the data source
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("balancer", balancer.name());
+        result.put("primaryReads", primaryReads.get());
+        result.put("fallbacks", fallbacks.get());
+        List<Map<String, Object>> perReplica = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            perReplica.add(replica.stats());
+        }
+        result.put("replicas", perReplica);
+        return result;
+    }
+
+    // the replicas; the primary is closed as the application data source bean
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.getDataSource() instanceof AutoCloseable) {
+                ((AutoCloseable) replica.getDataSource()).close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.crud.replica;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stands in for database replication when the replicas are local H2
+ * databases: every run copies the user and account tables of the primary
+ * over each replica's, so reads from a replica lag by up to one interval.
+ * Each copy is one replica transaction, a reader sees the old or the new
+ * snapshot and never an empty table. Meant for trying the routing locally;
+ * it copies whole tables.
+ */
+class SimulatedReplication {
+
+    private static final String USER_COLUMNS = "user_id, first_name, last_name, email, phone_number,"
+            + " address_line1, address_line2, version";
+
+    private static final String ACCOUNT_COLUMNS = "account_number, balance_minor, version, user_id";
+
+    private final JdbcTemplate primary;
+
+    private final TransactionTemplate primarySnapshot;
+
+    SimulatedReplication(DataSource primary) {
+        this.primary = new JdbcTemplate(primary);
+        this.primarySnapshot = new TransactionTemplate(new DataSourceTransactionManager(primary));
+        this.primarySnapshot.setReadOnly(true);
+    }
+
+    void replicate(List<Replica> replicas) {
+        List<List<Object[]>> snapshot = primarySnapshot.execute(status -> Arrays.asList(
+                rows("select " + USER_COLUMNS + " from user", 8),
+                rows("select " + ACCOUNT_COLUMNS + " from account", 4)));
+        for (Replica replica : replicas) {
+            JdbcTemplate target = new JdbcTemplate(replica.getDataSource());
+            new TransactionTemplate(new DataSourceTransactionManager(replica.getDataSource())).execute(status -> {
+                target.update("delete from account");
+                target.update("delete from user");
+                target.batchUpdate("insert into user (" + USER_COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?)",
+                        snapshot.get(0));
+                target.batchUpdate("insert into account (" + ACCOUNT_COLUMNS + ") values (?, ?, ?, ?)",
+                        snapshot.get(1));
+                return null;
+            });
+        }
+    }
+
+    private List<Object[]> rows(String sql, int columns) {
+        return primary.query(sql, (rs, i) -> {
+            Object[] row = new Object[columns];
+            for (int c = 0; c < columns; c++) {
+                row[c] = rs.getObject(c + 1);
+            }
+            return row;
+        });
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.crud.shard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves every account that is not on its owning shard to it: rows left on
+ * the shards of a previous ring after {@code crud.shards.count} changed, and
+ * rows written to the primary by paths that do not route by account.
+ * <p>
+ * Each shard is scanned in account number order a batch at a time. A row is
+ * copied to its owner only if the owner has no copy yet (a write routed
+ * there since wins), then deleted from where it was as long as its version
+ * did not move meanwhile. A row updated between the copy and the delete is
+ * copied again over the owner's copy unless that one was updated too, which
+ * is counted as a conflict and resolved in favour of the owner. Reads and
+ * writes keep working throughout, see {@link AccountShardingInterceptor}.
+ */
+@Component
+@ConditionalOnProperty(name = "crud.shards.enabled", havingValue = "true")
+public class AccountRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountRebalancer.class);
+
+    private static final String SCAN_SQL = "select account_number, balance_minor, version, user_id from account"
+            + " where account_number > ? order by account_number limit ?";
+
+    private static final String COPY_SQL = "insert into account (account_number, balance_minor, version, user_id)"
+            + " select cast(? as bigint), cast(? as bigint), cast(? as bigint), cast(? as bigint)"
+            + " where not exists (select 1 from account where account_number = ?)";
+
+    private static final String RECOPY_SQL = "update account set balance_minor = ?, version = ?, user_id = ?"
+            + " where account_number = ? and version = ?";
+
+    private static final String DELETE_SQL = "delete from account where account_number = ? and version = ?";
+
+    private static final int MAX_RECOPIES = 3;
+
+    @Autowired
+    private AccountShards shards;
+
+    @Value("${crud.shards.rebalance-batch-size:1000}")
+    private int batchSize;
+
+    @Value("${crud.shards.rebalance-on-start:true}")
+    private boolean rebalanceOnStart;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    void onStart() {
+        if (rebalanceOnStart) {
+            Thread thread = new Thread(this::rebalanceQuietly, "account-rebalance");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return rows scanned, moved and in conflict, and the time taken; or
+     *         {@code running: true} alone when a rebalance is already going
+     */
+    public Map<String, Object> rebalance() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!running.compareAndSet(false, true)) {
+            result.put("running", true);
+            return result;
+        }
+        try {
+            long start = System.nanoTime();
+            long scanned = 0;
+            long moved = 0;
+            long conflicts = 0;
+            for (int shard = 0; shard < shards.physicalShards(); shard++) {
+                long[] counts = drain(shard);
+                scanned += counts[0];
+                moved += counts[1];
+                conflicts += counts[2];
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            log.info("accounts rebalanced over {} shards: {} scanned, {} moved, {} conflicts in {} ms",
+                    shards.ring().size(), scanned, moved, conflicts, millis);
+            result.put("running", false);
+            result.put("scanned", scanned);
+            result.put("moved", moved);
+            result.put("conflicts", conflicts);
+            result.put("millis", millis);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            log.error("account rebalance failed, misplaced rows stay readable where they are", e);
+        }
+    }
+
+    private long[] drain(int shard) {
+        JdbcTemplate source = shards.jdbc(shard);
+        long scanned = 0;
+        long moved = 0;
+        long conflicts = 0;
+        long after = Long.MIN_VALUE;
+        List<Object[]> rows;
+        do {
+            rows = source.query(SCAN_SQL, (rs, i) -> new Object[] { rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                    rs.getObject(4) }, after, batchSize);
+            Map<Integer, List<Object[]>> misplaced = new TreeMap<>();
+            for (Object[] row : rows) {
+                int owner = shards.shardOf((Long) row[0]);
+                if (owner != shard) {
+                    misplaced.computeIfAbsent(owner, s -> new ArrayList<>()).add(row);
+                }
+            }
+            for (Map.Entry<Integer, List<Object[]>> batch : misplaced.entrySet()) {
+                long[] counts = move(source, shards.jdbc(batch.getKey()), batch.getValue());
+                moved += counts[0];
+                conflicts += counts[1];
+            }
+            scanned += rows.size();
+            if (!rows.isEmpty()) {
+                after = (Long) rows.get(rows.size() - 1)[0];
+            }
+        } while (rows.size() == batchSize);
+        return new long[] { scanned, moved, conflicts };
+    }
+
+    private long[] move(JdbcTemplate source, JdbcTemplate target, List<Object[]> rows) {
+        List<Object[]> copies = new ArrayList<>(rows.size());
+        List<Object[]> deletes = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            copies.add(new Object[] { row[0], row[1], row[2], row[3], row[0] });
+            deletes.add(new Object[] { row[0], row[2] });
+        }
+        target.batchUpdate(COPY_SQL, copies);
+        int[] deleted = source.batchUpdate(DELETE_SQL, deletes);
+        long moved = 0;
+        long conflicts = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (deleted[i] > 0) {
+                moved++;
+            } else if (!recopy(source, target, rows.get(i))) {
+                conflicts++;
+            } else {
+                moved++;
+            }
+        }
+        return new long[] { moved, conflicts };
+    }
+
+    // the source row changed after it was copied: bring the owner's copy up to date, then retry the delete
+    private boolean recopy(JdbcTemplate source, JdbcTemplate target, Object[] copied) {
+        Long accountNumber = (Long) copied[0];
+        long copiedVersion = (Long) copied[2];
+        for (int attempt = 0; attempt < MAX_RECOPIES; attempt++) {
+            List<Object[]> current = source.query(
+                    "select account_number, balance_minor, version, user_id from account where account_number = ?",
+                    (rs, i) -> new Object[] { rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getObject(4) },
+                    accountNumber);
+            if (current.isEmpty()) {
+                // deleted meanwhile, the delete also went to the owner
+                return true;
+            }
+            Object[] row = current.get(0);
+            if (target.update(RECOPY_SQL, row[1], row[2], row[3], accountNumber, copiedVersion) == 0) {
+                break;
+            }
+            if (source.update(DELETE_SQL, accountNumber, row[2]) > 0) {
+                return true;
+            }
+            copiedVersion = (Long) row[2];
+        }
+        log.warn("account {} was updated on two shards while moving, keeping the copy on its owning shard",
+                accountNumber);
+        source.update("delete from account where account_number = ?", accountNumber);
+        return false;
+    }
+
+}
@@ -0,0 +1,437 @@
+package com.crud.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityNotFoundException;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+
+/**
+ * Routes {@code AccountRepository} calls to the account shards.
+ * <p>
+ * Calls for one account run on the shard holding it: reads and conditional
+ * updates try the places in {@link AccountShards#lookupOrder} until one
+ * finds the row, saves and upserts first {@link AccountShards#locate} it so
+ * an account still waiting to be moved is updated where it is rather than
+ * duplicated. Calls over many accounts are scattered to every shard in
+ * parallel and merged: lists in account number order with keyset pages cut
+ * back to the page size, owner rows in user order, counts summed; a
+ * {@code Pageable} page is cut from the first offset + size rows of every
+ * shard, and its total can count a row being moved twice. Calls over a list
+ * of entities ({@code saveAll}, {@code deleteAll(Iterable)}) go back through
+ * the repository one account at a time; batch deletes run on every shard. A
+ * row found on two shards (copied, not yet deleted by a rebalance) is taken
+ * from its owning shard. The stream queries are merged row by row from a
+ * cursor per shard ({@link MergedCursor}), in the order of the query they
+ * stand for.
+ * <p>
+ * Inside a caller's transaction a keyed call runs on the transaction's
+ * shard, which the caller bound with {@link AccountShards#on}.
+ */
+class AccountShardingInterceptor implements MethodInterceptor {
+
+    private static final Comparator<Object[]> BY_USER_THEN_ACCOUNT = Comparator
+            .<Object[], Long>comparing(row -> (Long) row[0])
+            .thenComparing(row -> (Long) row[1]);
+
+    // the stream queries of AccountRepository in SQL, each shard's cursor must come in merge order
+    private static final String ACCOUNT_NUMBERS_SQL = "select account_number from account order by account_number";
+
+    private static final String OWNED_ROWS_SQL = "select user_id, account_number, balance_minor from account"
+            + " where user_id is not null order by user_id, account_number";
+
+    private final ObjectProvider<AccountShards> shardsProvider;
+
+    AccountShardingInterceptor(ObjectProvider<AccountShards> shards) {
+        this.shardsProvider = shards;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+        case "findById":
+        case "existsById":
+        case "findVersionByAccountNumber":
+        case "patch":
+        case "debit":
+        case "credit":
+            return firstHit(invocation, (Long) args[0]);
+        case "replace":
+            return firstHit(invocation, ((Account) args[0]).getAccountNumber());
+        case "save":
+        case "saveAndFlush":
+        case "upsert":
+            return located(invocation, ((Account) args[0]).getAccountNumber());
+        case "saveAll":
+        case "saveAllAndFlush":
+            return saveEach(invocation, (Iterable<?>) args[0]);
+        case "getOne":
+        case "getById":
+        case "getReferenceById":
+            // the row itself rather than a lazy reference, which would load later on whatever shard is current
+            return repository(invocation).findById((Long) args[0])
+                    .orElseThrow(() -> new EntityNotFoundException("Unable to find Account with id " + args[0]));
+        case "deleteById":
+            return everywhere(invocation, (Long) args[0]);
+        case "delete":
+            return everywhere(invocation, ((Account) args[0]).getAccountNumber());
+        case "deleteAllById":
+            for (Object id : (Iterable<?>) args[0]) {
+                repository(invocation).deleteById((Long) id);
+            }
+            return null;
+        case "deleteAll":
+            if (args.length == 1) {
+                for (Object account : (Iterable<?>) args[0]) {
+                    repository(invocation).delete((Account) account);
+                }
+                return null;
+            }
+            gather(invocation);
+            return null;
+        case "deleteInBatch":
+        case "deleteAllInBatch":
+        case "deleteAllByIdInBatch":
+            // a batch delete of rows a shard does not hold deletes nothing there
+            gather(invocation);
+            return null;
+        case "findAll":
+            if (args.length == 0 || args.length == 1 && args[0] instanceof Example) {
+                return sorted(merge(gather(invocation)));
+            }
+            if (args[args.length - 1] instanceof Sort) {
+                return sorted(merge(gather(invocation)), (Sort) args[args.length - 1]);
+            }
+            return page(invocation, args.length - 1);
+        case "findOne":
+            return findOne(gather(invocation));
+        case "exists":
+            return gather(invocation).stream().anyMatch(Boolean.TRUE::equals);
+        case "flush":
+            // the persistence context of the caller's transaction, on its shard
+            return invocation.proceed();
+        case "findAllById":
+            return findAllById(invocation, (Iterable<?>) args[0]);
+        case "findByAccountNumberGreaterThanOrderByAccountNumberAsc":
+            return page(merge(gather(invocation)), ((Pageable) args[1]).getPageSize());
+        case "findOwnerIds":
+            return gather(invocation).stream().flatMap(owners -> ((List<?>) owners).stream()).distinct()
+                    .collect(Collectors.toList());
+        case "findOwnedBy":
+            return ownedAccounts(gather(invocation));
+        case "findVersionsOwnedBy":
+            return accountVersions(gather(invocation));
+        case "deleteOwnedBy":
+            return gather(invocation).stream().mapToInt(deleted -> (Integer) deleted).sum();
+        case "count":
+            return gather(invocation).stream().mapToLong(count -> (Long) count).sum();
+        case "streamAllAccountNumbers":
+            return MergedCursor.stream(shards(), ACCOUNT_NUMBERS_SQL, 5000, (rs, rowNum) -> rs.getLong(1),
+                    Comparator.<Long>naturalOrder(), Long::longValue);
+        case "streamOwnedOrderByUserId":
+            return MergedCursor.stream(shards(), OWNED_ROWS_SQL, 500,
+                    (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) },
+                    BY_USER_THEN_ACCOUNT, row -> (Long) row[1]);
+        case "toString":
+        case "hashCode":
+        case "equals":
+            return invocation.proceed();
+        default:
+            break;
+        }
+        throw new UnsupportedOperationException("AccountRepository." + invocation.getMethod().getName()
+                + " is not supported on sharded accounts");
+    }
+
+    private AccountShards shards() {
+        return shardsProvider.getObject();
+    }
+
+    // calls made through the proxy are routed again, one account at a time
+    private static AccountRepository repository(MethodInvocation invocation) {
+        return (AccountRepository) ((ProxyMethodInvocation) invocation).getProxy();
+    }
+
+    private static List<Account> saveEach(MethodInvocation invocation, Iterable<?> accounts) {
+        List<Account> saved = new ArrayList<>();
+        for (Object account : accounts) {
+            saved.add(repository(invocation).save((Account) account));
+        }
+        return saved;
+    }
+
+    private Object firstHit(MethodInvocation invocation, long accountNumber) throws Throwable {
+        int[] order = shards().lookupOrder(accountNumber);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return inTransaction(invocation, order, accountNumber);
+        }
+        Object result = null;
+        for (int shard : order) {
+            result = proceedOn(shard, invocation);
+            if (!isMiss(result)) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private Object located(MethodInvocation invocation, long accountNumber) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return inTransaction(invocation, shards().lookupOrder(accountNumber), accountNumber);
+        }
+        return proceedOn(shards().locate(accountNumber), invocation);
+    }
+
+    // a delete goes to every place the account may be, so no stale copy resurfaces
+    private Object everywhere(MethodInvocation invocation, long accountNumber) throws Throwable {
+        int[] order = shards().lookupOrder(accountNumber);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return inTransaction(invocation, order, accountNumber);
+        }
+        EmptyResultDataAccessException missing = null;
+        boolean deleted = false;
+        for (int shard : order) {
+            try {
+                proceedOn(shard, invocation);
+                deleted = true;
+            } catch (EmptyResultDataAccessException e) {
+                missing = missing == null ? e : missing;
+            }
+        }
+        if (!deleted && missing != null) {
+            throw missing;
+        }
+        return null;
+    }
+
+    private Object inTransaction(MethodInvocation invocation, int[] order, long accountNumber) throws Throwable {
+        Integer bound = ShardContext.current();
+        int current = bound == null ? 0 : bound;
+        for (int shard : order) {
+            if (shard == current) {
+                return invocation.proceed();
+            }
+        }
+        throw new IllegalStateException("Account " + accountNumber + " is not on shard " + current
+                + ", the shard of the current transaction");
+    }
+
+    // every attempt proceeds on its own copy of the invocation
+    private static Object proceedOn(int shard, MethodInvocation invocation) throws Throwable {
+        return run(shard, ((ProxyMethodInvocation) invocation).invocableClone());
+    }
+
+    private static Object run(int shard, MethodInvocation call) throws Throwable {
+        try {
+            return ShardContext.call(shard, () -> proceed(call));
+        } catch (UndeclaredInvocationException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isMiss(Object result) {
+        return result == null
+                || result instanceof Optional && !((Optional<?>) result).isPresent()
+                || Boolean.FALSE.equals(result)
+                || result instanceof Integer && (Integer) result == 0;
+    }
+
+    private List<Object> gather(MethodInvocation invocation, Object... args) {
+        List<MethodInvocation> calls = clones(invocation, args);
+        return shards().scatter(shard -> proceed(calls.get(shard)));
+    }
+
+    // every shard is asked for the first offset + size rows, the merged page is cut from those
+    @SuppressWarnings("unchecked")
+    private Page<Account> page(MethodInvocation invocation, int pageableIndex) {
+        Pageable pageable = (Pageable) invocation.getArguments()[pageableIndex];
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted(merge(gather(invocation)), pageable.getSort()));
+        }
+        long end = pageable.getOffset() + pageable.getPageSize();
+        Object[] args = invocation.getArguments().clone();
+        args[pageableIndex] = PageRequest.of(0, (int) end, pageable.getSort());
+        List<Object> pages = gather(invocation, args);
+        long total = 0;
+        for (Object page : pages) {
+            total += ((Page<Account>) page).getTotalElements();
+        }
+        List<Account> rows = sorted(merge(pages), pageable.getSort());
+        int from = (int) Math.min(pageable.getOffset(), rows.size());
+        return new PageImpl<>(new ArrayList<>(rows.subList(from, (int) Math.min(end, rows.size()))), pageable, total);
+    }
+
+    private Optional<?> findOne(List<Object> perShard) {
+        Optional<?> found = Optional.empty();
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            Optional<?> hit = (Optional<?>) perShard.get(shard);
+            if (hit.isPresent() && (!found.isPresent()
+                    || shards().shardOf(((Account) hit.get()).getAccountNumber()) == shard)) {
+                found = hit;
+            }
+        }
+        return found;
+    }
+
+    private List<MethodInvocation> clones(MethodInvocation invocation, Object... args) {
+        List<MethodInvocation> calls = new ArrayList<>();
+        for (int shard = 0; shard < shards().physicalShards(); shard++) {
+            calls.add(args.length == 0 ? ((ProxyMethodInvocation) invocation).invocableClone()
+                    : ((ProxyMethodInvocation) invocation).invocableClone(args));
+        }
+        return calls;
+    }
+
+    private static Object proceed(MethodInvocation call) {
+        try {
+            return call.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredInvocationException(e);
+        }
+    }
+
+    private Object findAllById(MethodInvocation invocation, Iterable<?> ids) throws Throwable {
+        AccountShards shards = shards();
+        Map<Long, Account> found = new LinkedHashMap<>();
+        List<Long> remaining = new ArrayList<>();
+        for (Object id : ids) {
+            remaining.add((Long) id);
+        }
+        // round 0 asks each owning shard, later rounds the other places for ids still missing
+        for (int round = 0; !remaining.isEmpty(); round++) {
+            Map<Integer, List<Long>> byShard = new TreeMap<>();
+            for (Long id : remaining) {
+                int[] order = shards.lookupOrder(id);
+                if (round < order.length) {
+                    byShard.computeIfAbsent(order[round], s -> new ArrayList<>()).add(id);
+                }
+            }
+            if (byShard.isEmpty()) {
+                break;
+            }
+            for (Map.Entry<Integer, List<Long>> batch : byShard.entrySet()) {
+                MethodInvocation call = ((ProxyMethodInvocation) invocation).invocableClone(batch.getValue());
+                for (Object account : (Iterable<?>) run(batch.getKey(), call)) {
+                    found.putIfAbsent(((Account) account).getAccountNumber(), (Account) account);
+                }
+            }
+            remaining.removeIf(found::containsKey);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    // one row per account, the owning shard's when it is on two
+    private Collection<Account> merge(List<Object> perShard) {
+        AccountShards shards = shards();
+        Map<Long, Account> merged = new LinkedHashMap<>();
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            for (Object row : (Iterable<?>) perShard.get(shard)) {
+                Account account = (Account) row;
+                Long key = account.getAccountNumber();
+                if (!merged.containsKey(key) || shards.shardOf(key) == shard) {
+                    merged.put(key, account);
+                }
+            }
+        }
+        return merged.values();
+    }
+
+    private static List<Account> sorted(Collection<Account> accounts) {
+        List<Account> result = new ArrayList<>(accounts);
+        result.sort(Comparator.comparing(Account::getAccountNumber));
+        return result;
+    }
+
+    // stable, so rows the sort does not order stay in account number order
+    private static List<Account> sorted(Collection<Account> accounts, Sort sort) {
+        List<Account> result = sorted(accounts);
+        Comparator<Account> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Account> next = Comparator.comparing(account -> property(account, order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        if (comparator != null) {
+            result.sort(comparator);
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparable<Object> property(Account account, String path) {
+        return (Comparable) new DirectFieldAccessor(account).getPropertyValue(path);
+    }
+
+    private static List<Account> page(Collection<Account> accounts, int size) {
+        List<Account> result = sorted(accounts);
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
+    }
+
+    // [userId, account] rows, one per account as in merge(), in user then account order
+    private List<Object[]> ownedAccounts(List<Object> perShard) {
+        AccountShards shards = shards();
+        Map<Long, Object[]> merged = new LinkedHashMap<>();
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            for (Object row : (Iterable<?>) perShard.get(shard)) {
+                Long key = ((Account) ((Object[]) row)[1]).getAccountNumber();
+                if (!merged.containsKey(key) || shards.shardOf(key) == shard) {
+                    merged.put(key, (Object[]) row);
+                }
+            }
+        }
+        return merged.values().stream()
+                .sorted(Comparator.<Object[], Long>comparing(row -> (Long) row[0])
+                        .thenComparing(row -> ((Account) row[1]).getAccountNumber()))
+                .collect(Collectors.toList());
+    }
+
+    // [accountNumber, version] rows, one per account as in merge()
+    private List<Object[]> accountVersions(List<Object> perShard) {
+        AccountShards shards = shards();
+        Map<Long, Object[]> merged = new LinkedHashMap<>();
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            for (Object row : (Iterable<?>) perShard.get(shard)) {
+                Long key = (Long) ((Object[]) row)[0];
+                if (!merged.containsKey(key) || shards.shardOf(key) == shard) {
+                    merged.put(key, (Object[]) row);
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static final class UndeclaredInvocationException extends RuntimeException {
+
+        UndeclaredInvocationException(Throwable cause) {
+            super(null, cause, false, false);
+        }
+    }
+
+}
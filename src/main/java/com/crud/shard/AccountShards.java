@@ -0,0 +1,202 @@
+package com.crud.shard;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Where each account lives and how to run work there.
+ * <p>
+ * An account belongs to the shard its number hashes to on the ring of
+ * {@code crud.shards.count} shards. Rows can also sit where they were put
+ * before: on the shard of the previous ring ({@code crud.shards.previous-count})
+ * until a rebalance moves them, or on shard 0 when they were written through
+ * a path that only knows the primary (users with nested accounts, the CSV
+ * import). {@link #lookupOrder} lists those places, owning shard first.
+ */
+@Component
+@ConditionalOnProperty(name = "crud.shards.enabled", havingValue = "true")
+public class AccountShards {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${crud.shards.count:4}")
+    private int count;
+
+    @Value("${crud.shards.previous-count:0}")
+    private int previousCount;
+
+    @Value("${crud.shards.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${crud.shards.scatter-threads:0}")
+    private int scatterThreads;
+
+    @Value("${crud.shards.scatter-timeout-ms:30000}")
+    private long scatterTimeoutMillis;
+
+    private ShardRoutingDataSource router;
+
+    private ShardRing ring;
+
+    private ShardRing previousRing;
+
+    private ExecutorService scatter;
+
+    @PostConstruct
+    void init() throws SQLException {
+        router = dataSource.unwrap(ShardRoutingDataSource.class);
+        ring = new ShardRing(count, virtualNodes);
+        previousRing = previousCount > 0 && previousCount != count ? new ShardRing(previousCount, virtualNodes) : null;
+        AtomicInteger ids = new AtomicInteger();
+        int threads = scatterThreads > 0 ? scatterThreads : router.shardCount() * 2;
+        scatter = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "account-shard-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // the routing data source stands in for the application bean, whose destroy callback closes only the primary
+    @PreDestroy
+    void shutdown() throws Exception {
+        scatter.shutdownNow();
+        router.close();
+    }
+
+    public ShardRing ring() {
+        return ring;
+    }
+
+    public ShardRing previousRing() {
+        return previousRing;
+    }
+
+    /**
+     * Every shard that has a data source: the ring's, and those of a larger
+     * previous ring that are being drained.
+     */
+    public int physicalShards() {
+        return router.shardCount();
+    }
+
+    public int shardOf(long accountNumber) {
+        return ring.shardOf(accountNumber);
+    }
+
+    /**
+     * The shards that may hold the account, owning shard first, then the
+     * previous ring's shard, then the primary.
+     */
+    public int[] lookupOrder(long accountNumber) {
+        int owner = ring.shardOf(accountNumber);
+        int previous = previousRing == null ? owner : previousRing.shardOf(accountNumber);
+        if (owner == 0) {
+            return previous == 0 ? new int[] { 0 } : new int[] { 0, previous };
+        }
+        if (previous == owner || previous == 0) {
+            return new int[] { owner, 0 };
+        }
+        return new int[] { owner, previous, 0 };
+    }
+
+    /**
+     * The shard currently holding the account, or its owning shard when it
+     * does not exist yet. Costs a primary key probe per place looked at.
+     */
+    public int locate(long accountNumber) {
+        int[] order = lookupOrder(accountNumber);
+        if (order.length > 1) {
+            for (int shard : order) {
+                if (exists(shard, accountNumber)) {
+                    return shard;
+                }
+            }
+        }
+        return order[0];
+    }
+
+    public JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(router.shard(shard));
+    }
+
+    /**
+     * Runs {@code work} with connections from {@code shard}. Inside a
+     * transaction the connection is already taken, so only work for the
+     * transaction's own shard is allowed there.
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        Integer bound = ShardContext.current();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            int current = bound == null ? 0 : bound;
+            if (current != shard) {
+                throw new IllegalStateException("Transaction is bound to shard " + current + ", not " + shard);
+            }
+            return work.get();
+        }
+        return bound != null && bound == shard ? work.get() : ShardContext.call(shard, work);
+    }
+
+    /**
+     * Runs {@code work} on every physical shard in parallel, each on its own
+     * thread and so outside any transaction of the caller, and returns the
+     * results in shard order.
+     */
+    public <T> List<T> scatter(IntFunction<T> work) {
+        List<Future<T>> futures = new ArrayList<>(router.shardCount());
+        for (int i = 0; i < router.shardCount(); i++) {
+            int shard = i;
+            futures.add(scatter.submit(() -> ShardContext.call(shard, () -> work.apply(shard))));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scatterTimeoutMillis);
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Shard query timed out after " + scatterTimeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted waiting for shards", e);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private boolean exists(int shard, long accountNumber) {
+        return jdbc(shard).queryForObject("select count(*) from account where account_number = ?", Long.class,
+                accountNumber) > 0;
+    }
+
+}
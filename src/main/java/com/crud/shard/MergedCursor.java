@@ -0,0 +1,156 @@
+package com.crud.shard;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * One query, in the same order on every shard, read as a single stream in
+ * that order: a k-way merge over a forward-only cursor per shard, holding
+ * only the current row of each. A row found on two shards (copied, not yet
+ * deleted by a rebalance) is returned once, from its owning shard; the
+ * order must keep such copies next to each other.
+ * <p>
+ * Every cursor has a connection of its own, outside any transaction of the
+ * caller, until the stream is closed.
+ */
+final class MergedCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private static final class Head<T> {
+        final int shard;
+        final ResultSet rows;
+        int rowNum;
+        T row;
+
+        Head(int shard, ResultSet rows) {
+            this.shard = shard;
+            this.rows = rows;
+        }
+    }
+
+    private final AccountShards shards;
+    private final String sql;
+    private final RowMapper<T> mapper;
+    private final ToLongFunction<T> accountNumber;
+    private final PriorityQueue<Head<T>> heads;
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<PreparedStatement> statements = new ArrayList<>();
+    private final List<ResultSet> results = new ArrayList<>();
+
+    private MergedCursor(AccountShards shards, String sql, RowMapper<T> mapper, Comparator<? super T> order,
+            ToLongFunction<T> accountNumber) {
+        this.shards = shards;
+        this.sql = sql;
+        this.mapper = mapper;
+        this.accountNumber = accountNumber;
+        this.heads = new PriorityQueue<>(Math.max(1, shards.physicalShards()),
+                Comparator.<Head<T>, T>comparing(head -> head.row, order).thenComparingInt(head -> head.shard));
+    }
+
+    /**
+     * The merged rows of {@code sql}; close the stream to release the
+     * shards' connections.
+     */
+    static <T> Stream<T> stream(AccountShards shards, String sql, int fetchSize, RowMapper<T> mapper,
+            Comparator<? super T> order, ToLongFunction<T> accountNumber) {
+        MergedCursor<T> cursor = new MergedCursor<>(shards, sql, mapper, order, accountNumber);
+        try {
+            cursor.open(fetchSize);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(cursor::close);
+    }
+
+    private void open(int fetchSize) {
+        for (int shard = 0; shard < shards.physicalShards(); shard++) {
+            try {
+                Connection connection = shards.jdbc(shard).getDataSource().getConnection();
+                connections.add(connection);
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                statements.add(statement);
+                statement.setFetchSize(fetchSize);
+                ResultSet rows = statement.executeQuery();
+                results.add(rows);
+                advance(new Head<>(shard, rows));
+            } catch (SQLException e) {
+                throw translate(shard, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Head<T> first = heads.poll();
+        if (first == null) {
+            throw new NoSuchElementException();
+        }
+        T row = first.row;
+        long key = accountNumber.applyAsLong(row);
+        boolean owned = first.shard == shards.shardOf(key);
+        advance(first);
+        while (!heads.isEmpty() && accountNumber.applyAsLong(heads.peek().row) == key) {
+            Head<T> copy = heads.poll();
+            if (!owned && copy.shard == shards.shardOf(key)) {
+                row = copy.row;
+                owned = true;
+            }
+            advance(copy);
+        }
+        return row;
+    }
+
+    // back into the queue with its next row, or dropped at the end of its shard
+    private void advance(Head<T> head) {
+        try {
+            if (head.rows.next()) {
+                head.row = mapper.mapRow(head.rows, head.rowNum++);
+                heads.add(head);
+            }
+        } catch (SQLException e) {
+            throw translate(head.shard, e);
+        }
+    }
+
+    private RuntimeException translate(int shard, SQLException e) {
+        JdbcTemplate jdbc = shards.jdbc(shard);
+        RuntimeException translated = jdbc.getExceptionTranslator().translate("MergedCursor on shard " + shard, sql, e);
+        return translated != null ? translated : new IllegalStateException(e);
+    }
+
+    @Override
+    public void close() {
+        heads.clear();
+        results.forEach(JdbcUtils::closeResultSet);
+        statements.forEach(JdbcUtils::closeStatement);
+        connections.forEach(JdbcUtils::closeConnection);
+        results.clear();
+        statements.clear();
+        connections.clear();
+    }
+
+}
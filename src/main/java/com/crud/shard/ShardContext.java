@@ -0,0 +1,35 @@
+package com.crud.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread's connections are taken from; none means the
+ * primary (shard 0). It has to be bound before a transaction starts, since
+ * the transaction keeps the connection it began with.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T call(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.crud.shard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@ConditionalOnProperty(name = "crud.shards.enabled", havingValue = "true")
+public class ShardController {
+
+    @Autowired
+    private AccountShards shards;
+
+    @Autowired
+    private AccountRebalancer rebalancer;
+
+    // Ring sizes and the number of account rows on every shard
+    @GetMapping("/accounts/shards")
+    Map<String, Object> shards() {
+        List<Long> rows = shards.scatter(shard -> shards.jdbc(shard).queryForObject("select count(*) from account",
+                Long.class));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("shards", shards.ring().size());
+        result.put("previousShards", shards.previousRing() == null ? null : shards.previousRing().size());
+        result.put("rows", new ArrayList<>(rows));
+        return result;
+    }
+
+    // Move every account that is not on its owning shard, answered when done
+    @PostMapping("/accounts/shards/rebalance")
+    Map<String, Object> rebalance() {
+        return rebalancer.rebalance();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.crud.shard;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.crud.Hashing;
+
+/**
+ * Consistent-hash ring over shards {@code 0..shards-1}.
+ * <p>
+ * Every shard owns {@code virtualNodes} points on a 64-bit ring and a key
+ * belongs to the shard owning the first point at or after the key's hash.
+ * A shard's points depend only on its index, so growing the ring from N to
+ * N + 1 shards keeps every existing point: the only keys that move are the
+ * roughly 1/(N + 1) that now land on the new shard's points, and none move
+ * between the old shards.
+ */
+public final class ShardRing {
+
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(int shards, int virtualNodes) {
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("shards and virtual nodes must be positive: " + shards + ", " + virtualNodes);
+        }
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // a collision keeps the lower shard, whatever the ring size
+                ring.putIfAbsent(Hashing.fmix64(((long) shard << 32 | node) ^ 0x5bd1e9955bd1e995L), shard);
+            }
+        }
+        this.shards = shards;
+        this.points = new long[ring.size()];
+        this.owners = new int[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            owners[i++] = point.getValue();
+        }
+    }
+
+    public int size() {
+        return shards;
+    }
+
+    public int shardOf(long key) {
+        if (shards == 1) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(points, Hashing.fmix64(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.crud.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.crud.AccountRepository;
+import com.crud.PoolMetrics;
+import com.crud.RepositoryAdviceRegistrar;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hash sharding of the account table, enabled with
+ * {@code crud.shards.enabled=true}.
+ * <p>
+ * The application data source becomes a {@link ShardRoutingDataSource}:
+ * shard 0 is the original database, shards 1.. are created from
+ * {@code crud.shards.url-template} and get {@code account-shard-schema.sql};
+ * every shard gets the {@link TransferOutbox} tables and every pool is
+ * metered with {@link PoolMetrics}.
+ * {@code AccountRepository} is advised with an
+ * {@link AccountShardingInterceptor}, so its callers are unchanged. Users
+ * stay on shard 0; the accounts they embed are gathered from every shard by
+ * {@link com.crud.UserAccounts}. Accounts written through a user land on
+ * shard 0 and are moved to their shard by the next {@link AccountRebalancer}
+ * run.
+ * <p>
+ * To change the number of shards, set {@code crud.shards.count} to the new
+ * ring size and {@code crud.shards.previous-count} to the old one until a
+ * rebalance has finished; the shards of the larger of the two get data
+ * sources.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crud.shards.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfig.class);
+
+    @Bean
+    static BeanPostProcessor shardRoutingDataSource(Environment env, ObjectProvider<MeterRegistry> registry) {
+        if (env.getProperty("crud.ledger.enabled", Boolean.class, false)) {
+            // the ledger flushes balances with plain updates on the primary
+            throw new IllegalStateException("crud.ledger.enabled cannot be combined with crud.shards.enabled");
+        }
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)
+                        || bean instanceof ShardRoutingDataSource) {
+                    return bean;
+                }
+                return new ShardRoutingDataSource(shardDataSources((DataSource) bean, env, registry));
+            }
+        };
+    }
+
+    @Bean
+    static BeanPostProcessor shardedAccountRepository(ObjectProvider<AccountShards> shards) {
+        return new RepositoryAdviceRegistrar(AccountRepository.class, new AccountShardingInterceptor(shards));
+    }
+
+    private static List<DataSource> shardDataSources(DataSource primary, Environment env,
+            ObjectProvider<MeterRegistry> registry) {
+        int count = env.getProperty("crud.shards.count", Integer.class, 4);
+        int previousCount = env.getProperty("crud.shards.previous-count", Integer.class, 0);
+        String urlTemplate = env.getProperty("crud.shards.url-template", "jdbc:h2:mem:accounts-%d");
+        int poolSize = env.getProperty("crud.shards.pool-size", Integer.class, 10);
+
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(primary);
+        PoolMetrics.register(primary, registry);
+        ResourceDatabasePopulator outbox = new ResourceDatabasePopulator(
+                new ClassPathResource("transfer-outbox-schema.sql"));
+        DatabasePopulatorUtils.execute(outbox, primary);
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(
+                new ClassPathResource("account-shard-schema.sql"), new ClassPathResource("transfer-outbox-schema.sql"));
+        for (int shard = 1; shard < Math.max(count, previousCount); shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(String.format(urlTemplate, shard))
+                    .username(env.getProperty("crud.shards.username", "sa"))
+                    .password(env.getProperty("crud.shards.password", ""))
+                    .build();
+            dataSource.setPoolName("account-shard-" + shard);
+            dataSource.setMaximumPoolSize(poolSize);
+            PoolMetrics.register(dataSource, registry);
+            DatabasePopulatorUtils.execute(schema, dataSource);
+            shards.add(dataSource);
+        }
+        log.info("accounts sharded over {} shards ({} data sources)", count, shards.size());
+        return shards;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.crud.shard;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * The credit half of a transfer between accounts on different shards, kept
+ * durable across the gap between its two transactions.
+ * <p>
+ * The debit transaction {@link #record}s the credit it owes on the debited
+ * account's shard; the credit transaction {@link #markApplied marks} the
+ * transfer applied on the credited account's shard, so a credit replayed
+ * after a crash is applied once; the record is then {@link #remove}d. Records
+ * still there at startup are {@link #pending} and get replayed. Statements
+ * run on the application data source, so inside a transaction they join it
+ * on its shard and outside one they go to the shard bound with
+ * {@link AccountShards#on}.
+ */
+@Component
+@ConditionalOnProperty(name = "crud.shards.enabled", havingValue = "true")
+public class TransferOutbox {
+
+    public static final class Pending {
+
+        public final String transferId;
+        public final long from;
+        public final long to;
+        public final long amountMinor;
+
+        Pending(String transferId, long from, long to, long amountMinor) {
+            this.transferId = transferId;
+            this.from = from;
+            this.to = to;
+            this.amountMinor = amountMinor;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccountShards shards;
+
+    public void record(String transferId, long from, long to, long amountMinor) {
+        jdbcTemplate.update("insert into transfer_outbox (transfer_id, from_account, to_account, amount_minor)"
+                + " values (?, ?, ?, ?)", transferId, from, to, amountMinor);
+    }
+
+    /**
+     * @throws DuplicateKeyException when the transfer was applied before;
+     *         the caller's transaction has to roll back
+     */
+    public void markApplied(String transferId) {
+        jdbcTemplate.update("insert into transfer_applied (transfer_id) values (?)", transferId);
+    }
+
+    /**
+     * @return whether the record was still there
+     */
+    public boolean remove(String transferId) {
+        return jdbcTemplate.update("delete from transfer_outbox where transfer_id = ?", transferId) == 1;
+    }
+
+    /**
+     * The records on {@code shard}, oldest first.
+     */
+    public List<Pending> pending(int shard) {
+        return shards.jdbc(shard).query("select transfer_id, from_account, to_account, amount_minor"
+                + " from transfer_outbox order by created_at",
+                (rs, i) -> new Pending(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.crud.timing;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Per-request counters behind the {@code Server-Timing} header, bound to the
+ * request thread by {@link RequestTimingFilter}. Everything that records into
+ * it checks {@link #current()} and does nothing outside a timed request.
+ */
+public final class RequestTiming {
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Integer> statementCounts = new HashMap<>();
+    private int statements;
+    private long sqlNanos;
+    private long repositoryNanos;
+    private long repositorySqlNanos;
+    private int repositoryDepth;
+    private long serializationStartNanos;
+
+    static RequestTiming begin() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * A timing bound to no request, for work done on another thread on behalf
+     * of timed requests, such as a batched read: {@link #record} it there and
+     * {@link #include} it into each request it served.
+     */
+    public static RequestTiming detached() {
+        return new RequestTiming();
+    }
+
+    // binds this timing to the current thread while work runs
+    public <T> T record(Supplier<T> work) {
+        RequestTiming previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Adds the statements, SQL and repository time of work this request
+     * shared, each request it served is charged all of it.
+     */
+    public void include(RequestTiming shared) {
+        statements += shared.statements;
+        shared.statementCounts.forEach((sql, count) -> statementCounts.merge(sql, count, Integer::sum));
+        sqlNanos += shared.sqlNanos;
+        repositoryNanos += shared.repositoryNanos;
+        repositorySqlNanos += shared.repositorySqlNanos;
+    }
+
+    void statement(String sql) {
+        statements++;
+        statementCounts.merge(sql, 1, Integer::sum);
+    }
+
+    void sql(long nanos) {
+        sqlNanos += nanos;
+        if (repositoryDepth > 0) {
+            repositorySqlNanos += nanos;
+        }
+    }
+
+    // only the outermost repository call is timed, custom fragments may call other repositories
+    boolean enterRepository() {
+        return repositoryDepth++ == 0;
+    }
+
+    void exitRepository(boolean outermost, long nanos) {
+        repositoryDepth--;
+        if (outermost) {
+            repositoryNanos += nanos;
+        }
+    }
+
+    void serializationStarted() {
+        if (serializationStartNanos == 0) {
+            serializationStartNanos = System.nanoTime();
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * The statement issued most often in this request, the usual signature of
+     * an N+1 load (one query per parent row), or null if none was issued.
+     */
+    public Map.Entry<String, Integer> mostRepeated() {
+        Map.Entry<String, Integer> top = null;
+        for (Map.Entry<String, Integer> entry : statementCounts.entrySet()) {
+            if (top == null || entry.getValue() > top.getValue()) {
+                top = entry;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * {@code sql} is JDBC execution time, {@code hydrate} the rest of the time
+     * spent in repository calls (result set mapping, entity hydration, flush;
+     * lazy loads triggered later during serialization count towards {@code ser}),
+     * {@code ser} runs from the start of body serialization to {@code nowNanos}
+     * and {@code total} from the start of the request.
+     */
+    String header(long nowNanos) {
+        StringBuilder header = new StringBuilder(128);
+        metric(header, "sql", sqlNanos).append(";desc=\"").append(statements).append(" statements\"");
+        metric(header.append(", "), "hydrate", Math.max(0, repositoryNanos - repositorySqlNanos));
+        if (serializationStartNanos != 0) {
+            metric(header.append(", "), "ser", nowNanos - serializationStartNanos);
+        }
+        metric(header.append(", "), "total", nowNanos - startNanos);
+        return header.toString();
+    }
+
+    private static StringBuilder metric(StringBuilder header, String name, long nanos) {
+        return header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.crud.timing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.Repository;
+
+import com.crud.RepositoryAdviceRegistrar;
+
+/**
+ * Per-request {@code Server-Timing} breakdown and statement budget, enabled
+ * with {@code crud.request-timing.enabled=true}.
+ * <p>
+ * Nothing here is registered when it is off: no filter, no Hibernate
+ * statement inspector or session listener and no repository advice, so a
+ * disabled request pays nothing for it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "crud.request-timing.enabled", havingValue = "true")
+public class RequestTimingConfig {
+
+    @Bean
+    FilterRegistrationBean<RequestTimingFilter> requestTimingFilter(
+            @Value("${crud.request-timing.statement-budget:10}") int statementBudget) {
+        FilterRegistrationBean<RequestTimingFilter> registration =
+                new FilterRegistrationBean<>(new RequestTimingFilter(statementBudget));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer requestTimingHibernateProperties() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new TimingStatementInspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingListener.class.getName());
+        };
+    }
+
+    @Bean
+    static BeanPostProcessor requestTimingRepositories() {
+        MethodInterceptor interceptor = invocation -> {
+            RequestTiming timing = RequestTiming.current();
+            if (timing == null) {
+                return invocation.proceed();
+            }
+            boolean outermost = timing.enterRepository();
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                timing.exitRepository(outermost, System.nanoTime() - start);
+            }
+        };
+        return new RepositoryAdviceRegistrar(Repository.class, interceptor);
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.crud.timing;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Binds a {@link RequestTiming} to the request and reports it in a
+ * {@code Server-Timing} header, and logs requests that issue more statements
+ * than {@code crud.request-timing.statement-budget}.
+ * <p>
+ * The body is not buffered: the header is added just before the first byte
+ * reaches the servlet stream, or at the end of the request if nothing was
+ * written. Jackson buffers its output, so for bodies that fit its buffer
+ * {@code ser} covers the whole serialization; for larger ones it stops at the
+ * first flush. Streamed responses finish on another thread after the header
+ * has gone out and are reported up to that point.
+ */
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTimingFilter.class);
+
+    private final int statementBudget;
+
+    public RequestTimingFilter(int statementBudget) {
+        this.statementBudget = statementBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTiming timing = RequestTiming.begin();
+        TimedResponse timedResponse = new TimedResponse(response, timing);
+        try {
+            chain.doFilter(request, timedResponse);
+        } finally {
+            RequestTiming.end();
+            timedResponse.addHeader();
+            checkBudget(request, timing);
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, RequestTiming timing) {
+        if (timing.getStatements() <= statementBudget) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Map.Entry<String, Integer> top = timing.mostRepeated();
+        log.warn("{} {} issued {} statements (budget {}), {} of them: {}", request.getMethod(),
+                pattern != null ? pattern : request.getRequestURI(), timing.getStatements(), statementBudget,
+                top.getValue(), top.getKey());
+    }
+
+    private static final class TimedResponse extends HttpServletResponseWrapper {
+
+        private final RequestTiming timing;
+        private boolean headerAdded;
+        private ServletOutputStream outputStream;
+
+        TimedResponse(HttpServletResponse response, RequestTiming timing) {
+            super(response);
+            this.timing = timing;
+        }
+
+        void addHeader() {
+            if (!headerAdded && !isCommitted()) {
+                setHeader(HEADER, timing.header(System.nanoTime()));
+            }
+            headerAdded = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new HeaderOnFirstWrite(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            // writers are only used for small error and text bodies
+            addHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addHeader();
+            super.sendError(sc, msg);
+        }
+
+        private final class HeaderOnFirstWrite extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            HeaderOnFirstWrite(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                addHeader();
+                delegate.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                addHeader();
+                delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                addHeader();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                addHeader();
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.crud.timing;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Adds JDBC execution time to the current timed request. Hibernate creates one
+ * per session ({@code hibernate.session.events.auto}), so the start time needs
+ * no synchronization.
+ */
+public class SqlTimingListener extends BaseSessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private long executeStartNanos;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executeStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record();
+    }
+
+    private void record() {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null && executeStartNanos != 0) {
+            timing.sql(System.nanoTime() - executeStartNanos);
+        }
+        executeStartNanos = 0;
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.crud.timing;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares for the current timed request.
+ */
+public class TimingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            timing.statement(sql);
+        }
+        return sql;
+    }
+
+}
@@ -0,0 +1,22 @@
+-- accounts on shards 1..n; shard 0 is the primary, whose schema Hibernate manages.
+-- users live on the primary only: user_id is not a foreign key here, and the user table
+-- exists so the owner join of an account query resolves (to no owner)
+create table if not exists user (
+    user_id bigint primary key,
+    first_name varchar(255),
+    last_name varchar(255),
+    email varchar(255),
+    phone_number bigint,
+    address_line1 varchar(255),
+    address_line2 varchar(255),
+    version bigint default 0 not null
+);
+
+create table if not exists account (
+    account_number bigint primary key,
+    balance_minor bigint not null,
+    version bigint default 0 not null,
+    user_id bigint
+);
+
+create index if not exists account_user_id on account (user_id);
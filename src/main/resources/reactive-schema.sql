@@ -0,0 +1,19 @@
+create table if not exists user (
+    user_id bigint primary key,
+    first_name varchar(255),
+    last_name varchar(255),
+    email varchar(255),
+    phone_number bigint,
+    address_line1 varchar(255),
+    address_line2 varchar(255),
+    version bigint default 0 not null
+);
+
+create table if not exists account (
+    account_number bigint primary key,
+    balance_minor bigint not null,
+    version bigint default 0 not null,
+    user_id bigint references user (user_id)
+);
+
+create index if not exists account_user_id on account (user_id);
@@ -0,0 +1,25 @@
+-- local replicas of the user and account tables, filled by SimulatedReplication. No foreign key:
+-- a replication run replaces both tables in one transaction
+create table if not exists user (
+    user_id bigint primary key,
+    first_name varchar(255),
+    last_name varchar(255),
+    email varchar(255),
+    phone_number bigint,
+    address_line1 varchar(255),
+    address_line2 varchar(255),
+    version bigint default 0 not null
+);
+
+create table if not exists account (
+    account_number bigint primary key,
+    balance_minor bigint not null,
+    version bigint default 0 not null,
+    user_id bigint
+);
+
+create index if not exists account_user_id on account (user_id);
+create index if not exists user_email on user (email, user_id);
+create index if not exists user_phone_number on user (phone_number, user_id);
+create index if not exists user_last_name on user (last_name, user_id);
+create index if not exists user_first_name on user (first_name, user_id);
@@ -0,0 +1,14 @@
+-- on every shard, the primary included: the credits owed by cross-shard transfers whose debit committed here,
+-- and the transfers whose credit was applied here
+create table if not exists transfer_outbox (
+    transfer_id varchar(36) primary key,
+    from_account bigint not null,
+    to_account bigint not null,
+    amount_minor bigint not null,
+    created_at timestamp default current_timestamp not null
+);
+
+create table if not exists transfer_applied (
+    transfer_id varchar(36) primary key,
+    applied_at timestamp default current_timestamp not null
+);
@@ -34,8 +34,12 @@ public class AccountControllerRestTemplateTest {
     @MockBean
     private AccountRepository mockRepository;
 
+    @Autowired
+    private ResponseBodyCache responseBodyCache;
+
     @Before
     public void init() {
+        responseBodyCache.invalidateAll();
         Account account = new Account(123L,12345.00);
         when(mockRepository.findById(123L)).thenReturn(Optional.of(account));
     }
@@ -118,8 +122,9 @@ public class AccountControllerRestTemplateTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         JSONAssert.assertEquals(om.writeValueAsString(updateAccount), response.getBody(), false);
 
-        verify(mockRepository, times(1)).findById(123L);
-        verify(mockRepository, times(1)).save(any(Account.class));
+        verify(mockRepository, times(1)).upsert(any(Account.class));
+        verify(mockRepository, times(0)).findById(123L);
+        verify(mockRepository, times(0)).save(any(Account.class));
 
     }
 
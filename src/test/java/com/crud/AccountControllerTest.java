@@ -2,13 +2,16 @@ package com.crud;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
@@ -17,12 +20,17 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,12 +50,43 @@ public class AccountControllerTest {
     @MockBean
     private AccountRepository mockRepository;
 
+    @Autowired
+    private ResponseBodyCache responseBodyCache;
+
     @Before
     public void init() {
+        responseBodyCache.invalidateAll();
     	 Account account = new Account(123L,12345.00);
         when(mockRepository.findById(123L)).thenReturn(Optional.of(account));
     }
 
+    @Test
+    public void find_accountIfNoneMatch_304WithoutLoading() throws Exception {
+
+        when(mockRepository.findVersionByAccountNumber(123L)).thenReturn(Optional.of(4L));
+
+        mockMvc.perform(get("/accounts/123").header(HttpHeaders.IF_NONE_MATCH, "\"4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+        verify(mockRepository, times(0)).findById(123L);
+    }
+
+    @Test
+    public void put_accountIfMatchStale_412() throws Exception {
+
+        when(mockRepository.replace(any(Account.class), eq(2L))).thenReturn(-1);
+
+        mockMvc.perform(put("/accounts/123")
+                .content("{\"accountBalance\":100.00}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(mockRepository, times(0)).upsert(any(Account.class));
+    }
+
     @Test
     public void find_accountId_OK() throws Exception {
 
@@ -62,6 +101,22 @@ public class AccountControllerTest {
 
     }
 
+    // findOne returns ResponseEntity<?>, so the converter only gets the body's class
+    @Test
+    public void find_accountIdProtobuf_OK() throws Exception {
+
+        byte[] body = mockMvc.perform(get("/accounts/123").accept(JacksonProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(JacksonProtobufHttpMessageConverter.PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ProtobufMapper protobuf = new ProtobufMapper();
+        Account account = protobuf.readerFor(Account.class).with(protobuf.generateSchemaFor(Account.class))
+                .readValue(body);
+        assertEquals(Long.valueOf(123L), account.getAccountNumber());
+        assertEquals(12345.00, account.getAccountBalance(), 0.0);
+    }
+
     @Test
     public void find_allAccount_OK() throws Exception {
 
@@ -83,6 +138,26 @@ public class AccountControllerTest {
         verify(mockRepository, times(1)).findAll();
     }
 
+    @Test
+    public void find_accountPage_OK() throws Exception {
+
+        List<Account> accounts = Arrays.asList(
+                new Account(456L,45678.00),
+                new Account(789L,78901.00));
+
+        when(mockRepository.findByAccountNumberGreaterThanOrderByAccountNumberAsc(eq(123L), any(Pageable.class)))
+                .thenReturn(accounts);
+
+        mockMvc.perform(get("/accounts/page").param("after", KeysetCursor.encode(123L)).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].accountNumber", is(456)))
+                .andExpect(jsonPath("$.items[1].accountNumber", is(789)))
+                .andExpect(jsonPath("$.next", nullValue()));
+
+        verify(mockRepository, times(1)).findByAccountNumberGreaterThanOrderByAccountNumberAsc(eq(123L), any(Pageable.class));
+    }
+
     @Test
     public void find_accountNumberNotFound_404() throws Exception {
         mockMvc.perform(get("/accounts/90")).andExpect(status().isNotFound());
@@ -106,6 +181,30 @@ public class AccountControllerTest {
 
     }
 
+    @Test
+    public void save_accountBatch_OK() throws Exception {
+
+        List<Account> accounts = Arrays.asList(
+                new Account(9001L,100.00),
+                new Account(9002L,200.00),
+                new Account(9001L,300.00),
+                new Account(null,400.00));
+
+        mockMvc.perform(post("/accounts/batch")
+                .content(om.writeValueAsString(accounts))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(2)))
+                .andExpect(jsonPath("$.failed", is(2)))
+                .andExpect(jsonPath("$.items", hasSize(4)))
+                .andExpect(jsonPath("$.items[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.items[1].status", is("CREATED")))
+                .andExpect(jsonPath("$.items[2].status", is("FAILED")))
+                .andExpect(jsonPath("$.items[2].id", is(9001)))
+                .andExpect(jsonPath("$.items[3].status", is("FAILED")));
+
+    }
+
     @Test
     public void update_account_OK() throws Exception {
 
@@ -120,6 +219,86 @@ public class AccountControllerTest {
                 .andExpect(jsonPath("$.accountNumber", is(123)))
                 .andExpect(jsonPath("$.accountBalance", is(224466.00)));
 
+        verify(mockRepository, times(1)).upsert(any(Account.class));
+        verify(mockRepository, times(0)).findById(123L);
+    }
+
+    @Test
+    public void patch_accountBalance_OK() throws Exception {
+
+        when(mockRepository.patch(eq(123L), anyMap())).thenReturn(1);
+
+        mockMvc.perform(patch("/accounts/123")
+                .content("{\"accountBalance\":500.25}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent());
+
+        verify(mockRepository, times(1)).patch(123L, Collections.singletonMap("balanceMinor", 50025L));
+        verify(mockRepository, times(0)).save(any(Account.class));
+    }
+
+    @Test
+    public void patch_accountNumber_405() throws Exception {
+
+        mockMvc.perform(patch("/accounts/123")
+                .content("{\"accountNumber\":999}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isMethodNotAllowed());
+
+        verify(mockRepository, times(0)).patch(anyLong(), anyMap());
+    }
+
+    @Test
+    public void transfer_locksLowerAccountFirst_OK() throws Exception {
+
+        when(mockRepository.debit(456L, 1050L)).thenReturn(1);
+        when(mockRepository.credit(123L, 1050L)).thenReturn(1);
+
+        mockMvc.perform(post("/accounts/transfer")
+                .content("{\"from\":456,\"to\":123,\"amount\":10.50}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent());
+
+        InOrder inOrder = inOrder(mockRepository);
+        inOrder.verify(mockRepository).credit(123L, 1050L);
+        inOrder.verify(mockRepository).debit(456L, 1050L);
+    }
+
+    @Test
+    public void transfer_insufficientFunds_409() throws Exception {
+
+        when(mockRepository.debit(123L, 100L)).thenReturn(0);
+        when(mockRepository.existsById(123L)).thenReturn(true);
+
+        mockMvc.perform(post("/accounts/transfer")
+                .content("{\"from\":123,\"to\":456,\"amount\":1}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+
+        verify(mockRepository, times(0)).credit(anyLong(), anyLong());
+    }
+
+    @Test
+    public void transfer_unknownAccount_404() throws Exception {
+
+        when(mockRepository.debit(123L, 100L)).thenReturn(1);
+        when(mockRepository.credit(999L, 100L)).thenReturn(0);
+
+        mockMvc.perform(post("/accounts/transfer")
+                .content("{\"from\":123,\"to\":999,\"amount\":1.00}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void transfer_subCentAmount_400() throws Exception {
+
+        mockMvc.perform(post("/accounts/transfer")
+                .content("{\"from\":123,\"to\":456,\"amount\":0.001}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(mockRepository, times(0)).debit(anyLong(), anyLong());
     }
 
     @Test
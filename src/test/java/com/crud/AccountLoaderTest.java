@@ -0,0 +1,144 @@
+package com.crud;
+
+import com.crud.timing.RequestTiming;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class AccountLoaderTest {
+
+    private final AccountRepository mockRepository = mock(AccountRepository.class);
+
+    private final AccountLoader loader = new AccountLoader();
+
+    private final ExecutorService clients = Executors.newFixedThreadPool(8);
+
+    @Captor
+    private ArgumentCaptor<Iterable<Long>> ids;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(loader, "repository", mockRepository);
+        ReflectionTestUtils.setField(loader, "windowMicros", 50_000L);
+        ReflectionTestUtils.setField(loader, "maxBatchSize", 100);
+        ReflectionTestUtils.setField(loader, "loaderThreads", 2);
+        ReflectionTestUtils.setField(loader, "timeoutMillis", 5_000L);
+        loader.init();
+    }
+
+    @After
+    public void shutdown() {
+        loader.shutdown();
+        clients.shutdownNow();
+    }
+
+    @Test
+    public void findById_concurrentLookups_oneQuery() throws Exception {
+
+        when(mockRepository.findAllById(any())).thenReturn(Arrays.asList(
+                new Account(1L,100.00),
+                new Account(2L,200.00)));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Account>>> results = new ArrayList<>();
+        for (long id : new long[] { 1, 2, 1, 3, 2, 1, 3, 2 }) {
+            results.add(clients.submit(() -> {
+                start.await();
+                return loader.findById(id);
+            }));
+        }
+        start.countDown();
+
+        assertEquals(100.00, results.get(0).get().get().getAccountBalance(), 0.0);
+        assertEquals(200.00, results.get(1).get().get().getAccountBalance(), 0.0);
+        assertFalse(results.get(3).get().isPresent());
+        for (Future<Optional<Account>> result : results) {
+            result.get();
+        }
+
+        verify(mockRepository, times(1)).findAllById(ids.capture());
+        Set<Long> requested = new HashSet<>();
+        ids.getValue().forEach(requested::add);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), requested);
+        verify(mockRepository, never()).findById(anyLong());
+    }
+
+    // Server-Timing binds a timing to every request, that must not turn batching off
+    @Test
+    public void findById_timedLookups_stillBatched() throws Exception {
+
+        when(mockRepository.findAllById(any())).thenReturn(Arrays.asList(
+                new Account(1L,100.00),
+                new Account(2L,200.00)));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Account>>> results = new ArrayList<>();
+        for (long id : new long[] { 1, 2 }) {
+            results.add(clients.submit(() -> {
+                start.await();
+                return RequestTiming.detached().record(() -> loader.findById(id));
+            }));
+        }
+        start.countDown();
+
+        assertEquals(100.00, results.get(0).get().get().getAccountBalance(), 0.0);
+        assertEquals(200.00, results.get(1).get().get().getAccountBalance(), 0.0);
+        verify(mockRepository, times(1)).findAllById(any());
+        verify(mockRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    public void findById_single_usesFindById() throws Exception {
+
+        when(mockRepository.findById(7L)).thenReturn(Optional.of(new Account(7L,700.00)));
+
+        assertEquals(700.00, loader.findById(7L).get().getAccountBalance(), 0.0);
+
+        verify(mockRepository, times(1)).findById(7L);
+        verify(mockRepository, never()).findAllById(any());
+    }
+
+    @Test
+    public void findById_afterDispatch_doesNotJoinRunningRead() throws Exception {
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockRepository.findById(9L)).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return Optional.of(new Account(9L,100.00));
+        }).thenReturn(Optional.of(new Account(9L,900.00)));
+
+        Future<Optional<Account>> stale = clients.submit(() -> loader.findById(9L));
+        reading.await();
+        Future<Optional<Account>> fresh = clients.submit(() -> loader.findById(9L));
+
+        assertEquals(900.00, fresh.get().get().getAccountBalance(), 0.0);
+        release.countDown();
+        assertEquals(100.00, stale.get().get().getAccountBalance(), 0.0);
+        verify(mockRepository, times(2)).findById(9L);
+    }
+
+}
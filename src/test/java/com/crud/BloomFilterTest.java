@@ -0,0 +1,40 @@
+package com.crud;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void mightContain_noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key * 7919);
+        }
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key * 7919));
+        }
+        assertEquals(10_000, filter.keys());
+    }
+
+    @Test
+    public void mightContain_falsePositiveRateNearConfigured() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long key = 1; key <= 100_000; key++) {
+            filter.add(key);
+        }
+        int falsePositives = 0;
+        for (long key = -1; key >= -100_000; key--) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        double observed = falsePositives / 100_000.0;
+        assertTrue("observed " + observed, observed < 0.015);
+        assertTrue("expected " + filter.expectedFalsePositiveRate(),
+                Math.abs(filter.expectedFalsePositiveRate() - 0.01) < 0.002);
+    }
+
+}
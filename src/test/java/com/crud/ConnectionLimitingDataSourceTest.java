@@ -0,0 +1,55 @@
+package com.crud;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class ConnectionLimitingDataSourceTest {
+
+    private final DataSource pool = mock(DataSource.class);
+
+    @Test
+    public void getConnection_permitReleasedOnClose_OK() throws Exception {
+
+        when(pool.getConnection()).thenReturn(mock(Connection.class));
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 2, 10);
+
+        Connection first = limited.getConnection();
+        limited.getConnection();
+        assertEquals(0, limited.availablePermits());
+
+        first.close();
+        first.close();
+        assertEquals(1, limited.availablePermits());
+    }
+
+    @Test(expected = SQLTransientConnectionException.class)
+    public void getConnection_noPermit_timesOut() throws Exception {
+
+        when(pool.getConnection()).thenReturn(mock(Connection.class));
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10);
+
+        limited.getConnection();
+        limited.getConnection();
+    }
+
+    @Test
+    public void getConnection_poolFailure_releasesPermit() throws Exception {
+
+        when(pool.getConnection()).thenThrow(new SQLTransientConnectionException("down"));
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10);
+
+        try {
+            limited.getConnection();
+        } catch (SQLTransientConnectionException expected) {
+        }
+        assertEquals(1, limited.availablePermits());
+    }
+
+}
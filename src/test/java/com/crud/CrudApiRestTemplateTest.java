@@ -0,0 +1,266 @@
+package com.crud;
+
+import com.crud.reactive.ReactiveCrudApplication;
+import com.crud.reactive.ReactiveDb;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONException;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The users/accounts contract, run against both stacks over their real
+ * databases: MicroserviceCrudApplication (servlet, JPA) and
+ * ReactiveCrudApplication (WebFlux, R2DBC). Each application is started
+ * once and cleared and re-seeded over HTTP before every test.
+ */
+@RunWith(Parameterized.class)
+public class CrudApiRestTemplateTest {
+
+    enum Stack {
+        MVC {
+            @Override
+            ConfigurableApplicationContext start() {
+                return new SpringApplicationBuilder(MicroserviceCrudApplication.class).profiles("test")
+                        .properties("server.port=0").run();
+            }
+
+            @Override
+            void clear(ConfigurableApplicationContext app) {
+                JdbcTemplate jdbc = app.getBean(JdbcTemplate.class);
+                jdbc.update("delete from account");
+                jdbc.update("delete from user");
+                app.getBean(UserCache.class).invalidateAll();
+                app.getBean(ResponseBodyCache.class).invalidateAll();
+            }
+        },
+        REACTIVE {
+            @Override
+            ConfigurableApplicationContext start() {
+                return new SpringApplicationBuilder(ReactiveCrudApplication.class).profiles("reactive")
+                        .web(WebApplicationType.REACTIVE).properties("server.port=0").run();
+            }
+
+            @Override
+            void clear(ConfigurableApplicationContext app) {
+                ReactiveDb db = app.getBean(ReactiveDb.class);
+                db.update("delete from account").block();
+                db.update("delete from user").block();
+            }
+        };
+
+        abstract ConfigurableApplicationContext start();
+
+        abstract void clear(ConfigurableApplicationContext app);
+    }
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final Map<Stack, ConfigurableApplicationContext> apps = new EnumMap<>(Stack.class);
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Object[] stacks() {
+        return Stack.values();
+    }
+
+    @Parameterized.Parameter
+    public Stack stack;
+
+    private TestRestTemplate restTemplate;
+
+    @AfterClass
+    public static void stop() {
+        apps.values().forEach(ConfigurableApplicationContext::close);
+        apps.clear();
+    }
+
+    @Before
+    public void init() throws Exception {
+        ConfigurableApplicationContext app = apps.computeIfAbsent(stack, Stack::start);
+        restTemplate = new TestRestTemplate(new RestTemplateBuilder()
+                .rootUri("http://localhost:" + app.getEnvironment().getProperty("local.server.port")));
+        stack.clear(app);
+
+        User user = new User(1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India");
+        user.setAccount(Collections.singletonList(new Account(123L, 12345.00)));
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/users/1", HttpMethod.PUT,
+                json(om.writeValueAsString(user)), String.class).getStatusCode());
+    }
+
+    private static HttpEntity<String> json(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+
+    @Test
+    public void find_userId_OK() throws JSONException {
+
+        String expected = "{userId:1,firstName:\"Ronak\",lastName:\"Mehta\",email:\"ronak@abc.com\",phoneNumber:7878789878,"
+                + "addressLine1:\"Pune\",addressLine2:\"India\",account:[{accountNumber:123,accountBalance:12345.0}]}";
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/users/1", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        JSONAssert.assertEquals(expected, response.getBody(), false);
+    }
+
+    @Test
+    public void find_allUser_OK() throws Exception {
+
+        User other = new User(2L, "Rohit", "Mehta", "rohit@abc.com", 7878789878L, "Pune", "India");
+        restTemplate.exchange("/users/2", HttpMethod.PUT, json(om.writeValueAsString(other)), String.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/users", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals("[{userId:1,account:[{accountNumber:123}]},{userId:2,firstName:\"Rohit\",account:[]}]",
+                response.getBody(), false);
+    }
+
+    @Test
+    public void find_userIdNotFound_404() throws Exception {
+
+        String expected = "{status:404,error:\"Not Found\",message:\"User id not found : 5\",path:\"/users/5\"}";
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/users/5", String.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        JSONAssert.assertEquals(expected, response.getBody(), false);
+    }
+
+    @Test
+    public void save_user_OK() throws Exception {
+
+        User newUser = new User(2L, "Rohit", "Mehta", "rohit@abc.com", 7878789878L, "Pune", "India");
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/users", newUser, String.class);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        JSONAssert.assertEquals(om.writeValueAsString(newUser), response.getBody(), false);
+        assertEquals("Rohit", restTemplate.getForObject("/users/2", User.class).getFirstName());
+    }
+
+    @Test
+    public void update_user_OK() throws Exception {
+
+        User updateUser = new User(1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Mumbai", "India");
+
+        ResponseEntity<String> response = restTemplate.exchange("/users/1", HttpMethod.PUT,
+                json(om.writeValueAsString(updateUser)), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals(om.writeValueAsString(updateUser), response.getBody(), false);
+        assertEquals("Mumbai", restTemplate.getForObject("/users/1", User.class).getAddressLine1());
+    }
+
+    @Test
+    public void update_userWithAccounts_OK() throws Exception {
+
+        User updateUser = new User(1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India");
+        updateUser.setAccount(Arrays.asList(new Account(123L, 1.50), new Account(456L, 10.50)));
+
+        ResponseEntity<String> response = restTemplate.exchange("/users/1", HttpMethod.PUT,
+                json(om.writeValueAsString(updateUser)), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals("{account:[{accountNumber:123,accountBalance:1.5},{accountNumber:456,accountBalance:10.5}]}",
+                restTemplate.getForObject("/users/1", String.class), false);
+    }
+
+    @Test
+    public void patch_userEmail_OK() {
+
+        ResponseEntity<String> response = restTemplate.exchange("/users/1", HttpMethod.PATCH,
+                json("{\"email\":\"ronak@gmail.com\",\"addressLine2\":null,\"phoneNumber\":null}"), String.class);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        User patched = restTemplate.getForObject("/users/1", User.class);
+        assertEquals("ronak@gmail.com", patched.getEmail());
+        assertEquals(null, patched.getAddressLine2());
+        assertEquals(null, patched.getPhoneNumber());
+        assertEquals("Mehta", patched.getLastName());
+    }
+
+    @Test
+    public void patch_userSalary_405() throws JSONException {
+
+        String expected = "{status:405,error:\"Method Not Allowed\",message:\"Field [salary] update is not allow.\"}";
+
+        ResponseEntity<String> response = restTemplate.exchange("/users/1", HttpMethod.PATCH,
+                json("{\"salary\":\"10000\"}"), String.class);
+
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED, response.getStatusCode());
+        JSONAssert.assertEquals(expected, response.getBody(), false);
+    }
+
+    @Test
+    public void delete_user_OK() {
+
+        ResponseEntity<String> response = restTemplate.exchange("/users/1", HttpMethod.DELETE, null, String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/users/1", String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity("/accounts/123", String.class).getStatusCode());
+    }
+
+    @Test
+    public void find_accountNumber_OK() throws JSONException {
+
+        ResponseEntity<String> response = restTemplate.getForEntity("/accounts/123", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JSONAssert.assertEquals("{accountNumber:123,accountBalance:12345.00}", response.getBody(), false);
+    }
+
+    @Test
+    public void update_account_OK() throws Exception {
+
+        for (Account account : Arrays.asList(new Account(123L, 224466.00), new Account(789L, 1.25))) {
+            ResponseEntity<String> response = restTemplate.exchange("/accounts/" + account.getAccountNumber(),
+                    HttpMethod.PUT, json(om.writeValueAsString(account)), String.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+        }
+
+        assertEquals(224466.00, restTemplate.getForObject("/accounts/123", Account.class).getAccountBalance(), 0);
+        assertEquals(1.25, restTemplate.getForObject("/accounts/789", Account.class).getAccountBalance(), 0);
+    }
+
+    @Test
+    public void patch_accountBalance_OK() {
+
+        ResponseEntity<String> response = restTemplate.exchange("/accounts/123", HttpMethod.PATCH,
+                json("{\"accountBalance\":500.25}"), String.class);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        assertEquals(500.25, restTemplate.getForObject("/accounts/123", Account.class).getAccountBalance(), 0);
+    }
+
+    @Test
+    public void patch_accountNumber_405() {
+
+        ResponseEntity<String> response = restTemplate.exchange("/accounts/123", HttpMethod.PATCH,
+                json("{\"accountNumber\":999}"), String.class);
+
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED, response.getStatusCode());
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.crud;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Before
+    public void init() {
+        userCache.invalidateAll();
+    }
+
+    @Test
+    public void find_userIdNotFound_recordsHandlerRepositoryAndError() throws Exception {
+
+        mockMvc.perform(get("/users/404404"))
+                .andExpect(status().isNotFound());
+
+        Timer handler = meterRegistry.find("http.server.requests").tag("uri", "/users/{userId}").timer();
+        assertNotNull(handler);
+        assertTrue(handler.count() >= 1);
+
+        Timer repository = meterRegistry.find(RepositoryTimingInterceptor.METRIC)
+                .tags("repository", "userRepository", "method", "findById", "exception", "none").timer();
+        assertNotNull(repository);
+        assertTrue(repository.count() >= 1);
+
+        Counter errors = meterRegistry.find("crud.errors")
+                .tags("exception", "UserNotFoundException", "status", "404").counter();
+        assertNotNull(errors);
+        assertTrue(errors.count() >= 1);
+    }
+
+}
@@ -22,6 +22,8 @@ import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 @RunWith(SpringRunner.class)
@@ -37,8 +39,16 @@ public class UserControllerRestTemplateTest {
     @MockBean
     private UserRepository mockRepository;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private ResponseBodyCache responseBodyCache;
+
     @Before
     public void init() {
+        userCache.invalidateAll();
+        responseBodyCache.invalidateAll();
         User user = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
         when(mockRepository.findById(1L)).thenReturn(Optional.of(user));
     }
@@ -126,8 +136,9 @@ public class UserControllerRestTemplateTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         JSONAssert.assertEquals(om.writeValueAsString(updateUser), response.getBody(), false);
 
-        verify(mockRepository, times(1)).findById(1L);
-        verify(mockRepository, times(1)).save(any(User.class));
+        verify(mockRepository, times(1)).upsert(any(User.class));
+        verify(mockRepository, times(0)).findById(1L);
+        verify(mockRepository, times(0)).save(any(User.class));
 
     }
 
@@ -145,8 +156,9 @@ public class UserControllerRestTemplateTest {
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
-        verify(mockRepository, times(1)).findById(1L);
-        verify(mockRepository, times(1)).save(any(User.class));
+        verify(mockRepository, times(1)).upsert(any(User.class));
+        verify(mockRepository, times(0)).findById(1L);
+        verify(mockRepository, times(0)).save(any(User.class));
 
     }
 
@@ -166,7 +178,7 @@ public class UserControllerRestTemplateTest {
         assertEquals(HttpStatus.METHOD_NOT_ALLOWED, response.getStatusCode());
         JSONAssert.assertEquals(expected, response.getBody(), false);
 
-        verify(mockRepository, times(1)).findById(1L);
+        verify(mockRepository, times(0)).patch(anyLong(), anyMap());
         verify(mockRepository, times(0)).save(any(User.class));
     }
 
@@ -2,6 +2,8 @@ package com.crud;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -9,20 +11,32 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,8 +56,19 @@ public class UserControllerTest {
     @MockBean
     private UserRepository mockRepository;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private ResponseBodyCache responseBodyCache;
+
+    @MockBean
+    private AccountRepository mockAccountRepository;
+
     @Before
     public void init() {
+        userCache.invalidateAll();
+        responseBodyCache.invalidateAll();
     	 User user = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
         when(mockRepository.findById(1L)).thenReturn(Optional.of(user));
     }
@@ -67,6 +92,68 @@ public class UserControllerTest {
 
     }
 
+    @Test
+    public void find_userIdCbor_OK() throws Exception {
+
+        byte[] body = mockMvc.perform(get("/users/1").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        User user = new ObjectMapper(new CBORFactory()).readValue(body, User.class);
+        assertEquals(Long.valueOf(1L), user.getUserId());
+        assertEquals("ronak@abc.com", user.getEmail());
+    }
+
+    @Test
+    public void find_userIdProtobuf_OK() throws Exception {
+
+        byte[] body = mockMvc.perform(get("/users/1").accept(JacksonProtobufHttpMessageConverter.PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(JacksonProtobufHttpMessageConverter.PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ProtobufMapper protobuf = new ProtobufMapper();
+        User user = protobuf.readerFor(User.class).with(protobuf.generateSchemaFor(User.class)).readValue(body);
+        assertEquals(Long.valueOf(1L), user.getUserId());
+        assertEquals(Long.valueOf(7878789878L), user.getPhoneNumber());
+    }
+
+    @Test
+    public void find_userIdGzip_OK() throws Exception {
+
+        for (int i = 0; i < 2; i++) {
+            byte[] body = mockMvc.perform(get("/users/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"0-gzip\""))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                User user = om.readValue(in, User.class);
+                assertEquals("ronak@abc.com", user.getEmail());
+            }
+        }
+    }
+
+    @Test
+    public void find_userIdCached_OK() throws Exception {
+
+        mockMvc.perform(get("/users/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email", is("ronak@abc.com")));
+
+        verify(mockRepository, times(1)).findById(1L);
+
+        doNothing().when(mockRepository).deleteById(1L);
+        mockMvc.perform(delete("/users/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1")).andExpect(status().isOk());
+
+        verify(mockRepository, times(2)).findById(1L);
+    }
+
     @Test
     public void find_allUser_OK() throws Exception {
 
@@ -98,11 +185,127 @@ public class UserControllerTest {
         verify(mockRepository, times(1)).findAll();
     }
 
+    @Test
+    public void find_allUserWithAccounts_OK() throws Exception {
+
+        List<Object[]> rows = Arrays.asList(
+                new Object[] { 1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India", 123L, 1234500L },
+                new Object[] { 1L, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India", 456L, 50L },
+                new Object[] { 2L, "Rohit", "Mehta", "rohit@abc.com", 7878789878L, "Pune", "India", null, null });
+
+        when(mockRepository.findAllWithAccountRows()).thenReturn(rows);
+
+        mockMvc.perform(get("/users").param("include", "accounts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].firstName", is("Ronak")))
+                .andExpect(jsonPath("$[0].account", hasSize(2)))
+                .andExpect(jsonPath("$[0].account[0].accountBalance", is(12345.0)))
+                .andExpect(jsonPath("$[0].account[1].accountNumber", is(456)))
+                .andExpect(jsonPath("$[1].account", hasSize(0)));
+
+        verify(mockRepository, times(1)).findAllWithAccountRows();
+        verify(mockRepository, times(0)).findAll();
+    }
+
+    @Test
+    public void find_userPage_OK() throws Exception {
+
+        List<User> users = Arrays.asList(
+                new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India"),
+                new User(2L, "Rohit","Mehta","rohit@abc.com",7878789878L,"Pune","India"),
+                new User(3L, "Rahul","Mehta","rahul@abc.com",7878789878L,"Pune","India"));
+
+        when(mockRepository.findByUserIdGreaterThanOrderByUserIdAsc(eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(users);
+
+        mockMvc.perform(get("/users/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].userId", is(1)))
+                .andExpect(jsonPath("$.items[1].userId", is(2)))
+                .andExpect(jsonPath("$.next", is(KeysetCursor.encode(2L))));
+
+        verify(mockRepository, times(1)).findByUserIdGreaterThanOrderByUserIdAsc(eq(Long.MIN_VALUE), any(Pageable.class));
+    }
+
+    @Test
+    public void find_userPageBadCursor_400() throws Exception {
+        mockMvc.perform(get("/users/page").param("after", "not-a-cursor")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void search_email_OK() throws Exception {
+
+        when(mockRepository.findByEmailAndUserIdGreaterThanOrderByUserIdAsc(eq("ronak@abc.com"), eq(Long.MIN_VALUE),
+                any(Pageable.class))).thenReturn(Arrays.asList(
+                        new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India")));
+
+        mockMvc.perform(get("/users/search").param("email", "ronak@abc.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].userId", is(1)))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void search_lastNamePrefix_OK() throws Exception {
+
+        when(mockRepository.findByLastNamePrefix(eq("Me!_h%"), eq(""), eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(Arrays.asList(
+                        new User(1L, "Ronak","Me_ha","ronak@abc.com",7878789878L,"Pune","India"),
+                        new User(2L, "Rohit","Me_ha","rohit@abc.com",7878789878L,"Pune","India")));
+
+        mockMvc.perform(get("/users/search").param("lastName", "Me_h").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.next", is(KeysetCursor.encode("Me_ha", 1L))));
+    }
+
+    @Test
+    public void search_twoCriteria_400() throws Exception {
+        mockMvc.perform(get("/users/search").param("email", "ronak@abc.com").param("lastName", "Me"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void export_users_OK() throws Exception {
+
+        when(mockRepository.streamAllByOrderByUserId()).thenReturn(Stream.of(
+                new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India"),
+                new User(2L, "Rohit","Mehta","rohit@abc.com",7878789878L,"Pune","India")));
+        when(mockAccountRepository.streamOwnedOrderByUserId()).thenReturn(Stream.of(
+                new Object[] { 1L, 123L, 12345.00 },
+                new Object[] { 1L, 456L, 45678.00 }));
+
+        String body = mockMvc.perform(get("/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(2, om.readTree(lines[0]).get("account").size());
+        assertEquals(456L, om.readTree(lines[0]).get("account").get(1).get("accountNumber").asLong());
+        assertEquals(0, om.readTree(lines[1]).get("account").size());
+    }
+
     @Test
     public void find_userIdNotFound_404() throws Exception {
         mockMvc.perform(get("/users/5")).andExpect(status().isNotFound());
     }
 
+    @Test
+    public void find_userIdNotFound_problemBodyWithoutForward() throws Exception {
+        mockMvc.perform(get("/users/5"))
+                .andExpect(status().isNotFound())
+                .andExpect(forwardedUrl(null))
+                .andExpect(content().contentType("application/problem+json"))
+                .andExpect(jsonPath("$.status", is(404)))
+                .andExpect(jsonPath("$.message", is("User id not found : 5")))
+                .andExpect(jsonPath("$.path", is("/users/5")));
+    }
+
     @Test
     public void save_user_OK() throws Exception {
 
@@ -144,25 +347,115 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.addressLine1", is("Mumbai")))
                 .andExpect(jsonPath("$.addressLine2", is("India")));
 
+        verify(mockRepository, times(1)).upsert(any(User.class));
+        verify(mockRepository, times(0)).findById(1L);
+        verify(mockRepository, times(0)).save(any(User.class));
     }
 
     @Test
     public void patch_userEmail_OK() throws Exception {
 
-    	 User newUser = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
-         when(mockRepository.save(any(User.class))).thenReturn(newUser);
-
-//        when(mockRepository.save(any(User.class))).thenReturn(new User());
+        when(mockRepository.patch(eq(1L), anyMap())).thenReturn(1);
         String patchInJson = "{\"email\":\"ronak.mehta@gmail.com\"}";
 
         mockMvc.perform(patch("/users/1")
                 .content(patchInJson)
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(status().isNoContent());
 
-        verify(mockRepository, times(1)).findById(1L);
-        verify(mockRepository, times(1)).save(any(User.class));
+        verify(mockRepository, times(1)).patch(1L, Collections.singletonMap("email", "ronak.mehta@gmail.com"));
+        verify(mockRepository, times(0)).findById(1L);
+        verify(mockRepository, times(0)).save(any(User.class));
+
+    }
+
+    @Test
+    public void find_userIdIfNoneMatch_304() throws Exception {
+
+        mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void find_userIdGzipIfNoneMatch_304() throws Exception {
+
+        mockMvc.perform(get("/users/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0-gzip\""))
+                .andExpect(status().isNotModified());
+
+        // the identity body is a different representation, the gzip tag does not validate it
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"0-gzip\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+    }
+
+    @Test
+    public void find_userIdCborIfNoneMatch_ownTag() throws Exception {
+
+        mockMvc.perform(get("/users/1").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-cbor\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+        mockMvc.perform(get("/users/1").accept("application/cbor").header(HttpHeaders.IF_NONE_MATCH, "\"0-cbor\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+        // the CBOR tag does not validate the JSON body, nor the JSON tag the Smile one
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"0-cbor\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        mockMvc.perform(get("/users/1").accept("application/x-jackson-smile").header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-smile\""));
+    }
+
+    @Test
+    public void patch_userIfMatchStale_412() throws Exception {
+
+        when(mockRepository.patch(eq(1L), anyMap(), eq(3L))).thenReturn(-1);
+
+        mockMvc.perform(patch("/users/1")
+                .content("{\"email\":\"ronak.mehta@gmail.com\"}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"3.1f\""))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(mockRepository, times(1)).patch(1L, Collections.singletonMap("email", "ronak.mehta@gmail.com"), 3L);
+        verify(mockRepository, times(0)).patch(anyLong(), anyMap());
+    }
+
+    @Test
+    public void patch_userMergePatch_OK() throws Exception {
+
+        when(mockRepository.patch(eq(1L), anyMap())).thenReturn(1);
+        String patchInJson = "{\"phoneNumber\":9898989898,\"addressLine2\":null}";
+
+        mockMvc.perform(patch("/users/1")
+                .content(patchInJson)
+                .header(HttpHeaders.CONTENT_TYPE, "application/merge-patch+json"))
+                .andExpect(status().isNoContent());
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("phoneNumber", 9898989898L);
+        expected.put("addressLine2", null);
+        verify(mockRepository, times(1)).patch(1L, expected);
+    }
+
+    @Test
+    public void patch_userNotFound_404() throws Exception {
+
+        mockMvc.perform(patch("/users/5")
+                .content("{\"email\":\"nobody@abc.com\"}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
 
+        verify(mockRepository, times(1)).patch(eq(5L), anyMap());
     }
 
     @Test
@@ -175,7 +468,7 @@ public class UserControllerTest {
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
                 .andExpect(status().isMethodNotAllowed());
 
-        verify(mockRepository, times(1)).findById(1L);
+        verify(mockRepository, times(0)).patch(anyLong(), anyMap());
         verify(mockRepository, times(0)).save(any(User.class));
     }
 
@@ -191,4 +484,83 @@ public class UserControllerTest {
         verify(mockRepository, times(1)).deleteById(1L);
     }
 
+    @Test
+    public void find_userIdAfterAccountWrite_freshAccounts() throws Exception {
+
+        User user = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
+        user.setAccount(Collections.singletonList(new Account(123L, 10.00)));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account[0].accountBalance", is(10.00)));
+
+        User written = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
+        written.setAccount(Collections.singletonList(new Account(123L, 20.00)));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(written));
+        when(mockAccountRepository.findOwnerIds(any())).thenReturn(Collections.singletonList(1L));
+
+        mockMvc.perform(put("/accounts/123")
+                .content("{\"accountBalance\":20.00}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account[0].accountBalance", is(20.00)));
+    }
+
+    @Test
+    public void find_userIdIfNoneMatchAfterAccountWrite_200() throws Exception {
+
+        User user = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
+        user.setAccount(Collections.singletonList(new Account(123L, 10.00)));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        String etag = mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Account updated = new Account(123L, 20.00);
+        ReflectionTestUtils.setField(updated, "version", 1L);
+        User written = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
+        written.setAccount(Collections.singletonList(updated));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(written));
+        when(mockAccountRepository.findOwnerIds(any())).thenReturn(Collections.singletonList(1L));
+
+        mockMvc.perform(put("/accounts/123")
+                .content("{\"accountBalance\":20.00}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.account[0].accountBalance", is(20.00)));
+    }
+
+    @Test
+    public void find_userIdIfNoneMatch_304FromVersions() throws Exception {
+
+        User user = new User(1L, "Ronak","Mehta","ronak@abc.com",7878789878L,"Pune","India");
+        user.setAccount(Collections.singletonList(new Account(123L, 10.00)));
+        when(mockRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(mockRepository.findVersionByUserId(1L)).thenReturn(Optional.of(0L));
+        when(mockAccountRepository.findVersionsOwnedBy(1L))
+                .thenReturn(Collections.singletonList(new Object[] { 123L, 0L }));
+
+        String etag = mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        userCache.invalidateAll();
+
+        // the versions match the tag of the loaded user, the revalidation does not load it again
+        mockMvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+
+        verify(mockRepository, times(1)).findById(1L);
+    }
+
 }
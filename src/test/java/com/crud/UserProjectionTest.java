@@ -0,0 +1,80 @@
+package com.crud;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(Upserter.class)
+public class UserProjectionTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private UserRepository repository;
+
+    private Statistics statistics;
+
+    @Before
+    public void init() {
+        for (long userId = 1; userId <= 5; userId++) {
+            User user = em.persist(new User(userId, "First" + userId, "Last" + userId, "user" + userId + "@abc.com",
+                    7878789870L + userId, "Pune", "India"));
+            // user 5 has no accounts
+            for (long n = 0; n < (userId == 5 ? 0 : 2); n++) {
+                Account account = new Account(userId * 100 + n, 10.25 * n);
+                account.setUser(user);
+                em.persist(account);
+            }
+        }
+        em.flush();
+        em.clear();
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void findAllWithAccounts_oneQueryNoEntities_OK() {
+
+        List<UserSummary> users = UserSummary.fromRows(repository.findAllWithAccountRows());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(5, users.size());
+        assertEquals(2, users.get(0).getAccount().size());
+        assertEquals(101L, (long) users.get(0).getAccount().get(1).getAccountNumber());
+        assertEquals(10.25, users.get(0).getAccount().get(1).getAccountBalance(), 0);
+        assertEquals(0, users.get(4).getAccount().size());
+    }
+
+    @Test
+    public void findAll_entityPath_batchFetchesAccounts_OK() {
+
+        List<User> users = repository.findAll();
+        users.forEach(user -> user.getAccount().size());
+
+        // one query for the users, one IN query for all their account collections
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getEntityLoadCount() >= 13);
+    }
+
+}
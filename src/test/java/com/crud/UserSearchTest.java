@@ -0,0 +1,129 @@
+package com.crud;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "crud.user-index.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class UserSearchTest {
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final long FIRST = 940001L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private UserLookupIndex index;
+
+    @Before
+    public void awaitIndex() throws Exception {
+        for (int i = 0; i < 100 && !index.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(index.isReady());
+        create(FIRST, "Ada", "Lovelace", "ada@example.com", 5550001L);
+        create(FIRST + 1, "Alan", "Turing", "alan@example.com", 5550002L);
+        create(FIRST + 2, "Grace", "Lovelock", "grace@example.com", 5550003L);
+        create(FIRST + 3, "Adele", "Lovell", "ada@example.com", 5550004L);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        for (long id = FIRST; id < FIRST + 4; id++) {
+            if (repository.existsById(id)) {
+                mockMvc.perform(delete("/users/" + id)).andExpect(status().isOk());
+            }
+        }
+    }
+
+    private void create(long userId, String firstName, String lastName, String email, long phoneNumber)
+            throws Exception {
+        mockMvc.perform(post("/users")
+                .content(om.writeValueAsString(new User(userId, firstName, lastName, email, phoneNumber, "Pune",
+                        "India")))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    public void search_lastNamePrefix_pagedInNameOrder() throws Exception {
+
+        String next = om.readValue(mockMvc.perform(get("/users/search").param("lastName", "Love").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].lastName", is("Lovelace")))
+                .andExpect(jsonPath("$.items[1].lastName", is("Lovell")))
+                .andReturn().getResponse().getContentAsString(), Map.class).get("next").toString();
+
+        mockMvc.perform(get("/users/search").param("lastName", "Love").param("after", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].lastName", is("Lovelock")))
+                .andExpect(jsonPath("$.next", nullValue()));
+    }
+
+    @Test
+    public void search_exactEmailAndPhone() throws Exception {
+
+        mockMvc.perform(get("/users/search").param("email", "ada@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].userId", is((int) FIRST)))
+                .andExpect(jsonPath("$.items[1].userId", is((int) FIRST + 3)));
+
+        mockMvc.perform(get("/users/search").param("phoneNumber", "5550002"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].firstName", is("Alan")));
+    }
+
+    @Test
+    public void patchAndDelete_keptInSync() throws Exception {
+
+        mockMvc.perform(patch("/users/" + (FIRST + 1))
+                .content("{\"lastName\":\"Lovejoy\"}")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/users/" + FIRST)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/search").param("lastName", "Love"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(3)))
+                .andExpect(jsonPath("$.items[0].lastName", is("Lovejoy")));
+        mockMvc.perform(get("/users/search").param("lastName", "Turing"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+        mockMvc.perform(get("/users/search").param("firstName", "Ad"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].firstName", is("Adele")));
+    }
+
+}
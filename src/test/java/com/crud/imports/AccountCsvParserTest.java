@@ -0,0 +1,71 @@
+package com.crud.imports;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccountCsvParserTest {
+
+    private final List<String> rows = new ArrayList<>();
+    private final List<Long> malformed = new ArrayList<>();
+
+    private final AccountCsvParser.RowSink sink = new AccountCsvParser.RowSink() {
+        @Override
+        public void row(long accountNumber, long balanceMinor, long userId, long endOffset) {
+            rows.add(accountNumber + "|" + balanceMinor + "|" + userId + "|" + endOffset);
+        }
+
+        @Override
+        public void malformed(long lineOffset) {
+            malformed.add(lineOffset);
+        }
+    };
+
+    private static ByteBuffer bytes(String csv) {
+        return ByteBuffer.wrap(csv.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void parse_headerAndCrlf_OK() {
+
+        String csv = "accountNumber,accountBalance,user_id\r\n123,12345.50,1\r\n456, -7.25 ,2\n";
+
+        int consumed = new AccountCsvParser(true).parse(bytes(csv), 0, true, sink);
+
+        assertEquals(csv.length(), consumed);
+        assertEquals(2, rows.size());
+        assertEquals("123|1234550|1|" + csv.indexOf("456"), rows.get(0));
+        assertEquals("456|-725|2|" + csv.length(), rows.get(1));
+        assertEquals(0, malformed.size());
+    }
+
+    @Test
+    public void parse_partialLineLeftForNextSegment_OK() {
+
+        String csv = "123,1.00,1\n456,2.0";
+
+        int consumed = new AccountCsvParser(false).parse(bytes(csv), 100, false, sink);
+
+        assertEquals(csv.indexOf("456"), consumed);
+        assertEquals(1, rows.size());
+        assertEquals("123|100|1|" + (100 + consumed), rows.get(0));
+    }
+
+    @Test
+    public void parse_malformedLines_skipped() {
+
+        String csv = "123,1.00\n1.5,2.00,1\n789,x,3\n1,2,3,4\n5,1.234,1\n999,0.01,9";
+
+        new AccountCsvParser(false).parse(bytes(csv), 0, true, sink);
+
+        assertEquals(1, rows.size());
+        assertEquals("999|1|9|" + csv.length(), rows.get(0));
+        assertEquals(5, malformed.size());
+    }
+
+}
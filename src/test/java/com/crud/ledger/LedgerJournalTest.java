@@ -0,0 +1,74 @@
+package com.crud.ledger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LedgerJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> replayed = new ArrayList<>();
+
+    private long replay(Path dir, long afterSeq) throws IOException {
+        return LedgerJournal.replay(dir, afterSeq, (seq, accountNumber, deltaMinor) ->
+                replayed.add(seq + "|" + accountNumber + "|" + deltaMinor));
+    }
+
+    @Test
+    public void replay_acrossRolledSegments_OK() throws Exception {
+
+        Path dir = folder.getRoot().toPath();
+        try (LedgerJournal journal = new LedgerJournal(dir, 1, 16)) {
+            journal.append(1, 123, 500).join();
+            journal.append(2, 456, -250).join();
+            journal.roll(3).join();
+            journal.append(3, 123, 100).join();
+        }
+
+        assertEquals(3, replay(dir, 0));
+        assertEquals("[1|123|500, 2|456|-250, 3|123|100]", replayed.toString());
+    }
+
+    @Test
+    public void replay_skipsCheckpointedAndTornRecords_OK() throws Exception {
+
+        Path dir = folder.getRoot().toPath();
+        try (LedgerJournal journal = new LedgerJournal(dir, 1, 16)) {
+            journal.append(1, 123, 500).join();
+            journal.append(2, 456, -250).join();
+        }
+        Path segment = Files.list(dir).findFirst().get();
+        // a crash in the middle of the next write
+        Files.write(segment, new byte[LedgerJournal.RECORD_BYTES - 3], StandardOpenOption.APPEND);
+
+        assertEquals(2, replay(dir, 1));
+        assertEquals("[2|456|-250]", replayed.toString());
+    }
+
+    @Test
+    public void deleteSegmentsBefore_keepsLaterSegments_OK() throws Exception {
+
+        Path dir = folder.getRoot().toPath();
+        try (LedgerJournal journal = new LedgerJournal(dir, 1, 16)) {
+            journal.append(1, 123, 500).join();
+            journal.roll(2).join();
+            journal.append(2, 123, 100).join();
+            journal.deleteSegmentsBefore(2);
+        }
+
+        assertEquals(2, replay(dir, 0));
+        assertEquals("[2|123|100]", replayed.toString());
+    }
+
+}
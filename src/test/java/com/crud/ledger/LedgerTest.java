@@ -0,0 +1,78 @@
+package com.crud.ledger;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+import com.crud.error.InsufficientFundsException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "crud.ledger.enabled=true", "crud.ledger.dir=target/ledger-test",
+        "crud.ledger.flush-interval-ms=600000" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LedgerTest {
+
+    private static final long ACCOUNT_NUMBER = 940001L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Autowired
+    private Ledger ledger;
+
+    @Before
+    public void init() {
+        repository.save(new Account(ACCOUNT_NUMBER, 100.00));
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        ledger.flush();
+        repository.deleteById(ACCOUNT_NUMBER);
+    }
+
+    // the PATCH lowers the balance below what the ledger loaded; its debit must see the patched balance
+    @Test
+    public void adjust_afterPatch_seesPatchedBalance() throws Exception {
+
+        assertEquals(90.00, ledger.adjust(ACCOUNT_NUMBER, new BigDecimal("-10.00")).getAccountBalance(), 0.0);
+
+        mockMvc.perform(patch("/accounts/" + ACCOUNT_NUMBER)
+                .contentType("application/merge-patch+json")
+                .content("{\"accountBalance\":20.00}"))
+                .andExpect(status().isNoContent());
+
+        try {
+            ledger.adjust(ACCOUNT_NUMBER, new BigDecimal("-30.00"));
+            fail("debit beyond the patched balance accepted");
+        } catch (InsufficientFundsException expected) {
+            // 20.00 less the unflushed 10.00 cannot cover it
+        }
+        // the flush adds the -10.00 and -5.00 on top of the patched row
+        assertEquals(5.00, ledger.adjust(ACCOUNT_NUMBER, new BigDecimal("-5.00")).getAccountBalance(), 0.0);
+
+        ledger.flush();
+
+        assertEquals(5.00, repository.findById(ACCOUNT_NUMBER).get().getAccountBalance(), 0.0);
+    }
+
+}
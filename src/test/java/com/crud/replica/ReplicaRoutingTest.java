@@ -0,0 +1,153 @@
+package com.crud.replica;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "crud.replicas.enabled=true", "crud.replicas.count=2",
+        "crud.replicas.simulated-lag-ms=600000", "crud.replicas.health-check-interval-ms=600000",
+        "crud.replicas.retry-after-ms=600000" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReplicaRoutingTest {
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final long ACCOUNT = 930001L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Autowired
+    private ReplicaMonitor monitor;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @After
+    public void cleanUp() throws SQLException {
+        for (Replica replica : router().getReplicas()) {
+            replica.markUp();
+        }
+        try {
+            repository.deleteById(ACCOUNT);
+        } catch (EmptyResultDataAccessException e) {
+            // not saved by this test
+        }
+        monitor.replicate();
+    }
+
+    private ReplicaRoutingDataSource router() throws SQLException {
+        return dataSource.unwrap(ReplicaRoutingDataSource.class);
+    }
+
+    @Test
+    public void save_readBeforeReplication_missesOnReplica() {
+
+        repository.save(new Account(ACCOUNT, 10.00));
+
+        assertFalse(repository.findById(ACCOUNT).isPresent());
+
+        monitor.replicate();
+
+        assertTrue(repository.findById(ACCOUNT).isPresent());
+    }
+
+    @Test
+    public void pinnedThread_readsPrimary() {
+
+        repository.save(new Account(ACCOUNT, 10.00));
+
+        boolean wasPinned = ReplicaContext.pinPrimary();
+        try {
+            assertTrue(repository.findById(ACCOUNT).isPresent());
+        } finally {
+            ReplicaContext.restore(wasPinned);
+        }
+    }
+
+    @Test
+    public void post_thenGet_sameClientReadsItsWrite() throws Exception {
+
+        mockMvc.perform(post("/accounts")
+                .content(om.writeValueAsString(new Account(ACCOUNT, 10.00)))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                .header("X-Client-Id", "writer"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/accounts/" + ACCOUNT).header("X-Client-Id", "writer"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber", is((int) ACCOUNT)));
+
+        // another client reads the lagging replica
+        mockMvc.perform(get("/accounts/" + ACCOUNT).header("X-Client-Id", "reader"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void allReplicasDown_readsFallBackToPrimary() throws SQLException {
+
+        repository.save(new Account(ACCOUNT, 10.00));
+        for (Replica replica : router().getReplicas()) {
+            replica.markDown(new SQLException("test"));
+        }
+
+        assertTrue(repository.findById(ACCOUNT).isPresent());
+    }
+
+    @Test
+    public void stats_listReplicas() throws Exception {
+
+        mockMvc.perform(get("/replicas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balancer", is("ROUND_ROBIN")))
+                .andExpect(jsonPath("$.replicas", hasSize(2)))
+                .andExpect(jsonPath("$.replicas[0].healthy", is(true)));
+    }
+
+    @Test
+    public void pools_metered() throws SQLException {
+
+        for (Replica replica : router().getReplicas()) {
+            assertNotNull(replica.getName(), meterRegistry.find("hikaricp.connections.acquire")
+                    .tag("pool", replica.getName()).timer());
+        }
+        String primary = dataSource.unwrap(HikariDataSource.class).getPoolName();
+        assertNotNull(primary, meterRegistry.find("hikaricp.connections.acquire").tag("pool", primary).timer());
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.crud.shard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardRingTest {
+
+    @Test
+    public void shardOf_spreadsKeysEvenly() {
+        ShardRing ring = new ShardRing(4, 128);
+        int[] counts = new int[4];
+        for (long key = 0; key < 100_000; key++) {
+            counts[ring.shardOf(key)]++;
+        }
+        for (int count : counts) {
+            assertTrue("shard holds " + count, Math.abs(count - 25_000) < 25_000 * 0.2);
+        }
+    }
+
+    @Test
+    public void shardOf_addingShardOnlyMovesKeysToIt() {
+        ShardRing before = new ShardRing(4, 128);
+        ShardRing after = new ShardRing(5, 128);
+        int moved = 0;
+        for (long key = 0; key < 100_000; key++) {
+            int from = before.shardOf(key);
+            int to = after.shardOf(key);
+            if (from != to) {
+                assertEquals(4, to);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, Math.abs(moved - 20_000) < 20_000 * 0.2);
+    }
+
+    @Test
+    public void shardOf_singleShard() {
+        ShardRing ring = new ShardRing(1, 128);
+        assertEquals(0, ring.shardOf(Long.MIN_VALUE));
+        assertEquals(0, ring.shardOf(42));
+    }
+
+}
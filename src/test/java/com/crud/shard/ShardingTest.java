@@ -0,0 +1,301 @@
+package com.crud.shard;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+import com.crud.TransferService;
+import com.crud.User;
+import com.crud.UserCache;
+import com.crud.UserRepository;
+import com.crud.error.AccountNotFoundException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "crud.shards.enabled=true", "crud.shards.count=3",
+        "crud.shards.rebalance-on-start=false" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ShardingTest {
+
+    private static final long FIRST = 920000L;
+    private static final int ACCOUNTS = 60;
+
+    private static final long USER_ID = 920001L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountRepository repository;
+
+    @Autowired
+    private AccountShards shards;
+
+    @Autowired
+    private AccountRebalancer rebalancer;
+
+    @Autowired
+    private TransferService transfers;
+
+    @Autowired
+    private TransferOutbox outbox;
+
+    @Autowired
+    private UserRepository users;
+
+    @Autowired
+    private UserCache userCache;
+
+    @After
+    public void cleanUp() {
+        for (int shard = 0; shard < shards.physicalShards(); shard++) {
+            shards.jdbc(shard).update("delete from account where account_number >= ?", FIRST);
+            shards.jdbc(shard).update("delete from transfer_outbox");
+            shards.jdbc(shard).update("delete from transfer_applied");
+        }
+        users.findById(USER_ID).ifPresent(user -> users.deleteById(USER_ID));
+        userCache.invalidateAll();
+    }
+
+    private void saveAccounts() {
+        for (long i = 0; i < ACCOUNTS; i++) {
+            repository.save(new Account(FIRST + i, 100.00));
+        }
+    }
+
+    @Test
+    public void save_accountsSpreadOverShards() {
+
+        saveAccounts();
+
+        for (int shard = 0; shard < 3; shard++) {
+            List<Long> numbers = shards.jdbc(shard).queryForList(
+                    "select account_number from account where account_number >= ?", Long.class, FIRST);
+            assertTrue("shard " + shard + " is empty", !numbers.isEmpty());
+            for (Long number : numbers) {
+                assertEquals(shard, shards.shardOf(number));
+            }
+        }
+        assertEquals(100.00, repository.findById(FIRST + 7).get().getAccountBalance(), 0.0);
+    }
+
+    @Test
+    public void findPage_mergedInAccountOrder() throws Exception {
+
+        saveAccounts();
+
+        List<Account> page = repository.findByAccountNumberGreaterThanOrderByAccountNumberAsc(FIRST + 9,
+                PageRequest.of(0, 20));
+        assertEquals(20, page.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Long.valueOf(FIRST + 10 + i), page.get(i).getAccountNumber());
+        }
+
+        mockMvc.perform(get("/accounts/" + (FIRST + 42)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber", is((int) (FIRST + 42))));
+    }
+
+    @Test
+    public void saveAll_findAllPageable_deleteAll_OK() {
+
+        List<Account> accounts = new ArrayList<>();
+        for (long i = 0; i < ACCOUNTS; i++) {
+            accounts.add(new Account(FIRST + i, 100.00));
+        }
+        repository.saveAll(accounts);
+
+        Page<Account> page = repository.findAll(PageRequest.of(1, 20, Sort.by(Sort.Direction.DESC, "accountNumber")));
+        assertEquals(20, page.getContent().size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Long.valueOf(FIRST + ACCOUNTS - 21 - i), page.getContent().get(i).getAccountNumber());
+        }
+        assertTrue(page.getTotalElements() >= ACCOUNTS);
+        assertEquals(100.00, repository.getOne(FIRST + 7).getAccountBalance(), 0.0);
+
+        repository.deleteAll(accounts);
+
+        for (int shard = 0; shard < shards.physicalShards(); shard++) {
+            assertEquals(Integer.valueOf(0), shards.jdbc(shard).queryForObject(
+                    "select count(*) from account where account_number >= ?", Integer.class, FIRST));
+        }
+    }
+
+    @Test
+    public void streamAllAccountNumbers_mergedInOrderOnce() {
+
+        saveAccounts();
+        // a copy a rebalance has not deleted yet
+        long copied = FIRST + 3;
+        int elsewhere = (shards.shardOf(copied) + 1) % shards.physicalShards();
+        shards.jdbc(elsewhere).update("insert into account (account_number, balance_minor, version) values (?, 100, 0)",
+                copied);
+
+        List<Long> numbers;
+        try (Stream<Long> stream = repository.streamAllAccountNumbers()) {
+            numbers = stream.filter(number -> number >= FIRST).collect(Collectors.toList());
+        }
+        assertEquals(ACCOUNTS, numbers.size());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(Long.valueOf(FIRST + i), numbers.get(i));
+        }
+    }
+
+    @Test
+    public void rebalance_movesRowsWrittenToPrimary() {
+
+        // as the CSV import or a user with nested accounts would write them
+        for (long i = 0; i < ACCOUNTS; i++) {
+            shards.jdbc(0).update("insert into account (account_number, balance_minor, version) values (?, 5000, 0)",
+                    FIRST + i);
+        }
+        // found where they are until moved
+        for (long i = 0; i < ACCOUNTS; i++) {
+            assertTrue(repository.existsById(FIRST + i));
+        }
+
+        Map<String, Object> result = rebalancer.rebalance();
+
+        assertTrue((Long) result.get("moved") > 0);
+        assertEquals(0L, result.get("conflicts"));
+        for (long i = 0; i < ACCOUNTS; i++) {
+            int owner = shards.shardOf(FIRST + i);
+            assertEquals(Long.valueOf(1), shards.jdbc(owner).queryForObject(
+                    "select count(*) from account where account_number = ?", Long.class, FIRST + i));
+            assertEquals(50.00, repository.findById(FIRST + i).get().getAccountBalance(), 0.0);
+        }
+    }
+
+    @Test
+    public void transfer_acrossShards_OK() {
+
+        saveAccounts();
+        long from = FIRST;
+        long to = FIRST + 1;
+        while (shards.shardOf(to) == shards.shardOf(from)) {
+            to++;
+        }
+        assertNotEquals(shards.shardOf(from), shards.shardOf(to));
+
+        transfers.transfer(from, to, new BigDecimal("25.50"));
+
+        assertEquals(74.50, repository.findById(from).get().getAccountBalance(), 0.0);
+        assertEquals(125.50, repository.findById(to).get().getAccountBalance(), 0.0);
+    }
+
+    @Test
+    public void transfer_acrossShards_creditReplayedOnce() {
+
+        saveAccounts();
+        long from = FIRST;
+        long to = FIRST + 1;
+        while (shards.shardOf(to) == shards.shardOf(from)) {
+            to++;
+        }
+        int fromShard = shards.shardOf(from);
+        // the debit committed with its outbox record, then the process stopped
+        shards.jdbc(fromShard).update("update account set balance_minor = balance_minor - 2550 where account_number = ?",
+                from);
+        shards.jdbc(fromShard).update("insert into transfer_outbox (transfer_id, from_account, to_account, amount_minor)"
+                + " values ('t-1', ?, ?, 2550)", from, to);
+
+        transfers.completePendingTransfers();
+        // a record left behind after the credit committed is only cleared
+        shards.jdbc(fromShard).update("insert into transfer_outbox (transfer_id, from_account, to_account, amount_minor)"
+                + " values ('t-1', ?, ?, 2550)", from, to);
+        transfers.completePendingTransfers();
+
+        assertEquals(74.50, repository.findById(from).get().getAccountBalance(), 0.0);
+        assertEquals(125.50, repository.findById(to).get().getAccountBalance(), 0.0);
+        assertTrue(outbox.pending(fromShard).isEmpty());
+    }
+
+    @Test
+    public void transfer_acrossShardsToMissingAccount_refunded() {
+
+        saveAccounts();
+        long from = FIRST;
+        long to = FIRST + ACCOUNTS;
+        while (shards.shardOf(to) == shards.shardOf(from)) {
+            to++;
+        }
+        long missing = to;
+
+        try {
+            transfers.transfer(from, missing, new BigDecimal("25.50"));
+            fail("transfer to a missing account");
+        } catch (AccountNotFoundException e) {
+            assertEquals(100.00, repository.findById(from).get().getAccountBalance(), 0.0);
+            assertTrue(outbox.pending(shards.shardOf(from)).isEmpty());
+        }
+    }
+
+    // one account of the user on each shard, as a rebalance leaves them
+    private void saveUserWithAccountOnEveryShard() {
+        users.save(new User(USER_ID, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India"));
+        boolean[] covered = new boolean[3];
+        for (long number = FIRST; !(covered[0] && covered[1] && covered[2]); number++) {
+            int shard = shards.shardOf(number);
+            if (!covered[shard]) {
+                covered[shard] = true;
+                shards.jdbc(shard).update("insert into account (account_number, balance_minor, version, user_id)"
+                        + " values (?, 1000, 0, ?)", number, USER_ID);
+            }
+        }
+    }
+
+    @Test
+    public void find_userAccountsOnEveryShard_OK() throws Exception {
+
+        saveUserWithAccountOnEveryShard();
+
+        mockMvc.perform(get("/users/" + USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account", hasSize(3)));
+        mockMvc.perform(get("/users?include=accounts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.userId == " + USER_ID + ")].account[*]", hasSize(3)));
+    }
+
+    @Test
+    public void delete_userAccountsOnEveryShard_OK() throws Exception {
+
+        saveUserWithAccountOnEveryShard();
+
+        mockMvc.perform(delete("/users/" + USER_ID)).andExpect(status().isOk());
+
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(Long.valueOf(0), shards.jdbc(shard).queryForObject(
+                    "select count(*) from account where user_id = ?", Long.class, USER_ID));
+        }
+    }
+
+}
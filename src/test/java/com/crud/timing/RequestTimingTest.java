@@ -0,0 +1,111 @@
+package com.crud.timing;
+
+import com.crud.Account;
+import com.crud.AccountRepository;
+import com.crud.User;
+import com.crud.UserCache;
+import com.crud.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "crud.request-timing.enabled=true", "crud.request-timing.statement-budget=1" })
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class RequestTimingTest {
+
+    private static final long USER_ID = 910001L;
+
+    private static final long ACCOUNT_NUMBER = 910002L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Before
+    public void init() {
+        repository.save(new User(USER_ID, "Ronak", "Mehta", "ronak@abc.com", 7878789878L, "Pune", "India"));
+        accountRepository.save(new Account(ACCOUNT_NUMBER, 100.00));
+        userCache.invalidateAll();
+    }
+
+    @After
+    public void cleanUp() {
+        repository.deleteById(USER_ID);
+        accountRepository.deleteById(ACCOUNT_NUMBER);
+    }
+
+    @Test
+    public void find_userId_serverTimingHeader_OK() throws Exception {
+
+        mockMvc.perform(get("/users/" + USER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string(RequestTimingFilter.HEADER, matchesPattern(
+                        "sql;dur=[0-9.]+;desc=\"[0-9]+ statements\", hydrate;dur=[0-9.]+, ser;dur=[0-9.]+, total;dur=[0-9.]+")))
+                .andExpect(header().string(RequestTimingFilter.HEADER, not(containsString("\"0 statements\""))));
+    }
+
+    // the lookup is read on an AccountLoader thread, the request is charged the batch's statements
+    @Test
+    public void find_accountNumber_serverTimingHeader_OK() throws Exception {
+
+        mockMvc.perform(get("/accounts/" + ACCOUNT_NUMBER))
+                .andExpect(status().isOk())
+                .andExpect(header().string(RequestTimingFilter.HEADER, containsString("sql;dur=")))
+                .andExpect(header().string(RequestTimingFilter.HEADER, not(containsString("\"0 statements\""))));
+    }
+
+    @Test
+    public void find_userIdNotFound_serverTimingHeader_OK() throws Exception {
+
+        mockMvc.perform(get("/users/-1"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().string(RequestTimingFilter.HEADER, containsString("total;dur=")));
+    }
+
+    @Test
+    public void mostRepeated_OK() {
+
+        RequestTiming timing = RequestTiming.begin();
+        try {
+            timing.statement("select u from users u");
+            for (int i = 0; i < 3; i++) {
+                timing.statement("select a from account a where a.user_id=?");
+            }
+
+            Map.Entry<String, Integer> top = timing.mostRepeated();
+            assertEquals(4, timing.getStatements());
+            assertEquals("select a from account a where a.user_id=?", top.getKey());
+            assertEquals(Integer.valueOf(3), top.getValue());
+        } finally {
+            RequestTiming.end();
+        }
+    }
+
+}